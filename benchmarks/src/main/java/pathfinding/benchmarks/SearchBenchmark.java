@@ -0,0 +1,88 @@
+package pathfinding.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * Every search algorithm over every seeded map generator, measured end to end (one PathFinder.findPath query per
+ * operation) and per step (one SearchContext.step per operation, as the UI drives a search). Run with the gc profiler
+ * for allocation per operation (gc.alloc.rate.norm):
+ * <pre>
+ *   mvn -B package
+ *   java -jar benchmarks/target/benchmarks.jar -prof gc
+ *   java -jar benchmarks/target/benchmarks.jar -prof gc -p generator=maze -p size=1024 -p algorithm=A*
+ * </pre>
+ * The end-to-end benchmark also reports nodes, the nodes expanded per second; divided by its ops/s that is the nodes
+ * expanded by one query. Maps of 4096 x 4096 need the 4 GB heap each fork is given.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class SearchBenchmark {
+    private static final double DENSITY = 0.25;
+    private static final long SEED = 42;
+
+    @Param({"open", "random", "maze", "rooms"})
+    public String generator;
+
+    @Param({"64", "256", "1024", "4096"})
+    public int size;
+
+    @Param({"Breadth-First", "A*", "Jump Point", "Bidirectional", "Dial"})
+    public String algorithm;
+
+    // The workload of whichever benchmark this trial runs
+    private IntSupplier workload;
+
+    /**
+     * Nodes expanded by the end-to-end queries, reported by JMH as a rate alongside ops/s
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    /**
+     * Builds the workload of the same name as the benchmark from BenchmarkWorkload, which is in the default package
+     * and so can only be reached by name.
+     */
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params) throws ReflectiveOperationException {
+        String benchmark = params.getBenchmark();
+        String name = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+        workload = (IntSupplier) Class.forName("BenchmarkWorkload")
+                .getMethod(name, String.class, int.class, double.class, long.class, String.class)
+                .invoke(null, generator, size, DENSITY, SEED, algorithm);
+    }
+
+    @Benchmark
+    public int endToEnd(Nodes counters) {
+        int expanded = workload.getAsInt();
+        counters.nodes += expanded;
+        return expanded;
+    }
+
+    @Benchmark
+    public int perStep() {
+        return workload.getAsInt();
+    }
+}
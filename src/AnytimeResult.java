@@ -0,0 +1,10 @@
+/**
+ * The outcome of a deadline-bounded AnytimeSearch.
+ * @param result the best route found before the search stopped. nodesExpanded counts every iteration.
+ * @param bound the route costs at most this many times the cheapest route: 1 once the route is known to be optimal,
+ * or infinity if no route was found or the first iteration was cut short before proving one
+ * @param iterations number of searches completed, each with a lower heuristic weight than the last
+ * @param complete true if the search finished before its deadline or budget: the route is optimal, or there is none
+ */
+public record AnytimeResult(PathResult result, double bound, int iterations, boolean complete) {
+}
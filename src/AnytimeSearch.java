@@ -0,0 +1,273 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A deadline-bounded search (ARA*) that returns a good route quickly and improves it while time remains. The first
+ * iteration is A* with the octile heuristic inflated by a weight, which heads almost straight for the target and
+ * finds a route costing at most weight times the cheapest. Each later iteration lowers the weight by WEIGHT_STEP
+ * until it reaches 1, when the route found is optimal.
+ *
+ * Iterations do not start from scratch. Distances carry over, and the only tiles expanded again are those left on the
+ * frontier or whose distance improved after they had been expanded (the INCONS list of ARA*). When the deadline or
+ * node budget runs out mid-iteration, the best route so far is returned with the tightest bound proven for it: the
+ * route's cost divided by the lowest possible cost of any route still unexplored.
+ *
+ * Costs and corner cutting are the same as SearchContext. Arrays cover every tile of the Map and are reused between
+ * queries through an epoch stamp, as in SearchContext. Not thread-safe; each thread should own its search.
+ */
+public class AnytimeSearch {
+    /**
+     * Heuristic weight of the first iteration used by PathFinder
+     */
+    public static final double DEFAULT_WEIGHT = 3.0;
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] STEP_COST = {10, 14, 10, 14, 10, 14, 10, 14};
+    // Weights are held in sixteenths, so heap keys stay exact integers
+    private static final int WEIGHT_SCALE = 16;
+    /**
+     * Amount the weight is lowered by after each iteration, in sixteenths (0.5)
+     */
+    private static final int WEIGHT_STEP = 8;
+    /**
+     * Expansions between reads of the clock
+     */
+    private static final int CLOCK_INTERVAL = 64;
+
+    private final Map map;
+    private final int width;
+    private final int height;
+    // Per-tile distance and parent, only meaningful where epochs[cell] == epoch
+    private int epoch;
+    private final int[] epochs;
+    private final int[] values;
+    private final int[] parents;
+    // Iteration in which each tile was last expanded or added to INCONS. Iterations are numbered across queries.
+    private int iteration;
+    private final int[] closedIn;
+    private final int[] inconsIn;
+    private final IndexedMinHeap open;
+    // INCONS during an iteration, then every tile to be re-keyed between iterations
+    private final int[] pending;
+    private int pendingSize;
+
+    private int targetCell;
+    private Coordinate target;
+    private int weight;
+    private int nodesExpanded;
+    private long deadline;
+    private int maxExpanded;
+
+    public AnytimeSearch(Map map) {
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+        epochs = new int[width * height];
+        values = new int[width * height];
+        parents = new int[width * height];
+        closedIn = new int[width * height];
+        inconsIn = new int[width * height];
+        pending = new int[width * height];
+        open = new IndexedMinHeap(width * height);
+    }
+
+    /**
+     * Searches until the route is known to be optimal, timeoutNanos have passed, or maxExpanded tiles have been
+     * expanded, whichever comes first.
+     * @param initialWeight heuristic weight of the first iteration, at least 1
+     * @return The best route found, with the bound proven for its cost
+     */
+    public AnytimeResult search(Coordinate start, Coordinate target, long timeoutNanos, int maxExpanded,
+                                double initialWeight) {
+        if (!map.isInBounds(start) || !map.isInBounds(target))
+            throw new IllegalArgumentException("Start and target must be within the map");
+        if (!(initialWeight >= 1))
+            throw new IllegalArgumentException("The heuristic weight must be at least 1: " + initialWeight);
+        long begin = System.nanoTime();
+        deadline = begin + timeoutNanos;
+        this.maxExpanded = maxExpanded;
+        this.target = target;
+        targetCell = indexOf(target);
+        weight = (int) Math.round(initialWeight * WEIGHT_SCALE);
+        nodesExpanded = 0;
+        pendingSize = 0;
+        newEpoch();
+
+        int startCell = indexOf(start);
+        touch(startCell);
+        touch(targetCell);
+        values[startCell] = 0;
+        open.clear();
+        open.push(startCell, key(startCell));
+
+        double bound = Double.POSITIVE_INFINITY;
+        int iterations = 0;
+        boolean complete = false;
+        while (true) {
+            nextIteration();
+            if (!improvePath())
+                break;
+            iterations++;
+            if (values[targetCell] == INFINITY) {
+                // Everything reachable was expanded without meeting the target
+                complete = true;
+                break;
+            }
+            bound = Math.min((double) weight / WEIGHT_SCALE, boundFor(values[targetCell]));
+            if (weight == WEIGHT_SCALE || bound <= 1) {
+                bound = 1;
+                complete = true;
+                break;
+            }
+            weight = Math.max(WEIGHT_SCALE, weight - WEIGHT_STEP);
+            reopen();
+        }
+        PathResult result = buildResult(startCell);
+        if (SearchStats.isRecording())
+            SearchStats.record("Anytime", result, System.nanoTime() - begin);
+        return new AnytimeResult(result, bound, iterations, complete);
+    }
+
+    /**
+     * Expands tiles in order of weighted estimate until no frontier tile could lead to a cheaper route to the target
+     * under the current weight. Tiles improved after being expanded this iteration are kept in INCONS rather than
+     * expanded again.
+     * @return false if the deadline or node budget ran out first
+     */
+    private boolean improvePath() {
+        while (!open.isEmpty() && targetKey() > open.peekKey()) {
+            if (nodesExpanded >= maxExpanded
+                    || (nodesExpanded % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline >= 0))
+                return false;
+            int cell = open.pop();
+            closedIn[cell] = iteration;
+            nodesExpanded++;
+            int x = cell % width;
+            int y = cell / width;
+            for (int dir = 0; dir < 8; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height)
+                    continue;
+                int next = ny * width + nx;
+                if (map.isWall(next))
+                    continue;
+                touch(next);
+                int totalDistance = values[cell] + STEP_COST[dir];
+                if (totalDistance >= values[next])
+                    continue;
+                values[next] = totalDistance;
+                parents[next] = cell;
+                if (closedIn[next] != iteration)
+                    open.pushOrDecrease(next, key(next));
+                else if (inconsIn[next] != iteration) {
+                    inconsIn[next] = iteration;
+                    pending[pendingSize++] = next;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The suboptimality proven for a route of the given cost: no unexplored route can cost less than the
+     * lowest unweighted estimate over the frontier and INCONS
+     */
+    private double boundFor(int cost) {
+        long lowest = cost;
+        for (int i = 0; i < open.size(); i++)
+            lowest = Math.min(lowest, values[open.cellAt(i)] + (long) heuristic(open.cellAt(i)));
+        for (int i = 0; i < pendingSize; i++)
+            lowest = Math.min(lowest, values[pending[i]] + (long) heuristic(pending[i]));
+        return lowest == 0 ? 1 : (double) cost / lowest;
+    }
+
+    /**
+     * Moves INCONS onto the frontier and re-keys every frontier tile for the new, lower weight.
+     */
+    private void reopen() {
+        for (int i = 0; i < open.size(); i++)
+            pending[pendingSize++] = open.cellAt(i);
+        open.clear();
+        for (int i = 0; i < pendingSize; i++)
+            open.push(pending[i], key(pending[i]));
+        pendingSize = 0;
+    }
+
+    /**
+     * Follows parents back from the target. Parents only ever get cheaper after being set, so the route costs at most
+     * the target's recorded distance; its actual cost is summed step by step.
+     */
+    private PathResult buildResult(int startCell) {
+        if (values[targetCell] == INFINITY)
+            return new PathResult(false, -1, List.of(), nodesExpanded);
+        ArrayList<Coordinate> path = new ArrayList<>();
+        int cost = 0;
+        int cell = targetCell;
+        path.add(target);
+        while (cell != startCell) {
+            int parent = parents[cell];
+            boolean diagonal = parent % width != cell % width && parent / width != cell / width;
+            cost += diagonal ? 14 : 10;
+            cell = parent;
+            path.add(new Coordinate(cell % width, cell / width));
+        }
+        Collections.reverse(path);
+        return new PathResult(true, cost, path, nodesExpanded);
+    }
+
+    private long key(int cell) {
+        return (long) WEIGHT_SCALE * values[cell] + (long) weight * heuristic(cell);
+    }
+
+    private long targetKey() {
+        return values[targetCell] == INFINITY ? Long.MAX_VALUE : key(targetCell);
+    }
+
+    /**
+     * The octile distance to the target, as in Algorithms.octileDistance
+     */
+    private int heuristic(int cell) {
+        int dx = Math.abs(cell % width - target.x());
+        int dy = Math.abs(cell / width - target.y());
+        return 10 * Math.max(dx, dy) + 4 * Math.min(dx, dy);
+    }
+
+    private void newEpoch() {
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            epoch = 1;
+            Arrays.fill(epochs, 0);
+        }
+    }
+
+    /**
+     * Starts a new iteration, which empties CLOSED and INCONS without touching their arrays.
+     */
+    private void nextIteration() {
+        iteration++;
+        if (iteration == Integer.MAX_VALUE) {
+            iteration = 1;
+            Arrays.fill(closedIn, 0);
+            Arrays.fill(inconsIn, 0);
+        }
+    }
+
+    /**
+     * Claims a tile for the current query, clearing whatever an older query left in it.
+     */
+    private void touch(int cell) {
+        if (epochs[cell] == epoch)
+            return;
+        epochs[cell] = epoch;
+        values[cell] = INFINITY;
+        parents[cell] = -1;
+    }
+
+    private int indexOf(Coordinate tile) {
+        return tile.y() * width + tile.x();
+    }
+}
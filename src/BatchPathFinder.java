@@ -0,0 +1,118 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Answers many pathfinding queries against one Map in parallel. The Map is copied once when the BatchPathFinder is
+ * created, so the snapshot every worker reads from never changes, and the original can keep being edited.
+ *
+ * Queries are split across the threads of a ForkJoinPool. Each task borrows a SearchContext from the batch's own
+ * workspaces and resets it between queries, so a batch allocates about one set of grids per thread rather than one
+ * per query. The workspaces belong to the call, so nothing is left behind on the pool's threads once it returns.
+ */
+public class BatchPathFinder {
+    /**
+     * Number of queries below which a task stops splitting and answers its queries directly.
+     */
+    private static final int BATCH_THRESHOLD = 16;
+
+    private final Map snapshot;
+    private final String algorithm;
+    private final String tieBreaking;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a BatchPathFinder that runs on the common ForkJoinPool.
+     * @param algorithm one of the names in Algorithms.algorithmOptions
+     */
+    public BatchPathFinder(Map map, String algorithm) {
+        this(map, algorithm, "high g", ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param algorithm one of the names in Algorithms.algorithmOptions
+     * @param tieBreaking one of Algorithms.tieBreakOptions
+     * @param pool the pool whose threads answer the queries
+     */
+    public BatchPathFinder(Map map, String algorithm, String tieBreaking, ForkJoinPool pool) {
+        if (!Arrays.asList(Algorithms.algorithmOptions).contains(algorithm))
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        if (algorithm.equals("Hierarchical"))
+            throw new IllegalArgumentException("Hierarchical searches cannot be batched");
+        this.snapshot = map.copy();
+        this.algorithm = algorithm;
+        this.tieBreaking = tieBreaking;
+        this.pool = pool;
+    }
+
+    /**
+     * Answers every query, blocking until all are done.
+     * @return One result per query, in the same order as the queries, as an unmodifiable list
+     */
+    public List<PathResult> findPaths(List<PathQuery> queries) {
+        PathResult[] results = new PathResult[queries.size()];
+        pool.invoke(new QueryTask(queries, results, new ConcurrentLinkedQueue<>(), 0, queries.size()));
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * @return The read-only copy of the Map that queries are answered against
+     */
+    public Map getSnapshot() {
+        return snapshot;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getTieBreaking() {
+        return tieBreaking;
+    }
+
+    /**
+     * Answers the queries in [from, to), splitting the range in half until it is small enough to answer directly.
+     * Each answer is written to its own slot of results, so no synchronization is needed beyond the join. A task
+     * answering directly takes an idle workspace, or creates one if all are in use, and returns it when done.
+     */
+    private class QueryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<PathQuery> queries;
+        private final PathResult[] results;
+        private final ConcurrentLinkedQueue<SearchContext> workspaces;
+        private final int from;
+        private final int to;
+
+        QueryTask(List<PathQuery> queries, PathResult[] results, ConcurrentLinkedQueue<SearchContext> workspaces,
+                  int from, int to) {
+            this.queries = queries;
+            this.results = results;
+            this.workspaces = workspaces;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                SearchContext workspace = workspaces.poll();
+                if (workspace == null)
+                    workspace = new SearchContext(snapshot, tieBreaking, null);
+                for (int i = from; i < to; i++) {
+                    PathQuery query = queries.get(i);
+                    workspace.reset(query.start(), query.target(), algorithm);
+                    results[i] = workspace.run();
+                }
+                workspaces.offer(workspace);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new QueryTask(queries, results, workspaces, from, middle),
+                    new QueryTask(queries, results, workspaces, middle, to));
+        }
+    }
+}
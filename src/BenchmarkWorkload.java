@@ -0,0 +1,44 @@
+import java.util.function.IntSupplier;
+
+/**
+ * The workloads measured by the JMH suite in benchmarks/. JMH only runs benchmarks in a named package, and code in a
+ * named package cannot refer to this project's classes, which are in the default package. The suite therefore builds
+ * each workload here once per trial, by name, and then calls it through IntSupplier, so every measured operation is
+ * one interface call into the same code an application runs.
+ *
+ * Both workloads search between the generated map's own start and target tiles.
+ */
+public final class BenchmarkWorkload {
+    private BenchmarkWorkload() {
+    }
+
+    /**
+     * One complete query per call through PathFinder.findPath, including building the returned route.
+     * @return A workload whose every call returns the nodes expanded by one query
+     */
+    public static IntSupplier endToEnd(String generator, int size, double density, long seed, String algorithm) {
+        Map map = MapGenerator.generate(generator, size, size, density, seed);
+        PathFinder pathFinder = new PathFinder(map);
+        Coordinate start = map.getStartCoord();
+        Coordinate target = map.getTargetCoord();
+        return () -> pathFinder.findPath(start, target, algorithm).nodesExpanded();
+    }
+
+    /**
+     * One SearchContext.step per call, as the UI drives a search. When the search finishes, the next call resets it,
+     * so the cost of each reset is spread over the steps of a whole search.
+     * @return A workload whose every call returns the flat index of the tile just searched
+     */
+    public static IntSupplier perStep(String generator, int size, double density, long seed, String algorithm) {
+        Map map = MapGenerator.generate(generator, size, size, density, seed);
+        Coordinate start = map.getStartCoord();
+        Coordinate target = map.getTargetCoord();
+        SearchContext search = new PathFinder(map).newSearch(start, target, algorithm);
+        return () -> {
+            if (search.isDone())
+                search.reset(start, target, algorithm);
+            search.step();
+            return search.getLastSearchedIndex();
+        };
+    }
+}
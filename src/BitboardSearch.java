@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bit-parallel breadth-first search for reachability and move-count queries. The open tiles and the frontier are held
+ * as rows of long words, one bit per tile, and the whole frontier is grown by one ring of 8-connected moves per
+ * iteration with shifts, ORs and ANDs: each frontier row is spread one tile left and right, each new row is the OR of
+ * the spread rows above, on and below it, masked by the open tiles not yet reached. One iteration handles 64 tiles per
+ * word operation where a per-tile search such as SearchContext's breadth-first handles one.
+ *
+ * Every move counts as one hop here, diagonal or not, so the distances are move counts rather than the 10 / 14 costs
+ * of SearchContext; as there, only the destination of a move has to be open. The words holding frontier tiles are
+ * listed, and each iteration only looks at the words around them, so the thin, scattered frontiers of a maze cost
+ * little more than the per-tile search. findPath keeps a copy of the frontier words of every ring and recovers a route
+ * with the fewest moves by stepping back from the target through the rings, preferring straight moves.
+ *
+ * The open tiles are kept up to date as the Map is edited. Not thread-safe; edits and queries must come from the same
+ * thread, and each thread should own its search.
+ */
+public class BitboardSearch implements MapListener {
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    // Straight moves first, so recovered routes are as cheap as a route with that many moves can easily be
+    private static final int[] BACKTRACK_ORDER = {0, 2, 4, 6, 1, 3, 5, 7};
+
+    private final Map map;
+    private final int width;
+    private final int height;
+    private final int words;
+    // Row-aligned bitboards: tile (x, y) is bit x & 63 of word y * words + (x >> 6). Bits past the width stay clear.
+    private final long[] open;
+    // Tiles reached by the current query, nonzero only in the words listed in visitedWords[0, visitedSize)
+    private final long[] visited;
+    private final int[] visitedWords;
+    private int visitedSize;
+    // The frontier is zero outside its active words, listed in active[0, activeSize); next is all zero
+    private long[] frontier;
+    private long[] next;
+    private int[] active;
+    private int[] nextActive;
+    private int activeSize;
+    // Words that might gain tiles in the next ring, each listed once through its stamp
+    private final int[] candidates;
+    private final int[] stamps;
+    private int stamp;
+
+    // Rings of the last findPath: each ring's active words in ascending order, and their bits
+    private final List<int[]> ringWords = new ArrayList<>();
+    private final List<long[]> ringBits = new ArrayList<>();
+
+    /**
+     * Copies the walls into bitboards and starts listening to the map. Call close() to stop listening.
+     */
+    public BitboardSearch(Map map) {
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+        words = (width + 63) >>> 6;
+        open = new long[height * words];
+        visited = new long[height * words];
+        visitedWords = new int[height * words];
+        frontier = new long[height * words];
+        next = new long[height * words];
+        active = new int[height * words];
+        nextActive = new int[height * words];
+        candidates = new int[height * words];
+        stamps = new int[height * words];
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                if (!map.isWall(x, y))
+                    open[wordOf(x, y)] |= 1L << x;
+        map.addListener(this);
+    }
+
+    /**
+     * @return Whether any route leads from start to target
+     */
+    public boolean isReachable(Coordinate start, Coordinate target) {
+        return hopDistance(start, target) >= 0;
+    }
+
+    /**
+     * @return The fewest moves from start to target, counting diagonal moves as one, or -1 if there is no route
+     */
+    public int hopDistance(Coordinate start, Coordinate target) {
+        return search(start, target, false);
+    }
+
+    /**
+     * Finds a route with the fewest moves. Its cost is the sum of its 10 / 14 move costs, which can be more than the
+     * cheapest route's, since that may take more moves.
+     */
+    public PathResult findPath(Coordinate start, Coordinate target) {
+        boolean recording = SearchStats.isRecording();
+        long begin = recording ? System.nanoTime() : 0;
+        PathResult result = findRoute(start, target);
+        if (recording)
+            SearchStats.record("Bitboard", result, System.nanoTime() - begin);
+        return result;
+    }
+
+    private PathResult findRoute(Coordinate start, Coordinate target) {
+        int hops = search(start, target, true);
+        int reached = 0;
+        for (int i = 0; i < visitedSize; i++)
+            reached += Long.bitCount(visited[visitedWords[i]]);
+        if (hops < 0)
+            return new PathResult(false, -1, List.of(), reached);
+
+        ArrayList<Coordinate> path = new ArrayList<>();
+        int x = target.x();
+        int y = target.y();
+        int cost = 0;
+        path.add(target);
+        for (int ring = hops - 1; ring >= 0; ring--) {
+            for (int dir : BACKTRACK_ORDER) {
+                // The tile this move would have come from
+                int px = x - DX[dir];
+                int py = y - DY[dir];
+                if (px < 0 || py < 0 || px >= width || py >= height || !inRing(ring, px, py))
+                    continue;
+                x = px;
+                y = py;
+                cost += dir % 2 == 0 ? 10 : 14;
+                break;
+            }
+            path.add(new Coordinate(x, y));
+        }
+        Collections.reverse(path);
+        return new PathResult(true, cost, path, reached);
+    }
+
+    /**
+     * Sets or clears the tile's open bit when its walkability changes.
+     */
+    @Override
+    public void tileChanged(Map map, Coordinate tile, int previous, int current) {
+        if (current == Map.WALL)
+            open[wordOf(tile.x(), tile.y())] &= ~(1L << tile.x());
+        else
+            open[wordOf(tile.x(), tile.y())] |= 1L << tile.x();
+    }
+
+    /**
+     * Stops listening to the map.
+     */
+    public void close() {
+        map.removeListener(this);
+    }
+
+    /**
+     * Grows rings from the start until one contains the target or the frontier dies out.
+     * @param keepRings whether to copy every ring for findPath
+     * @return The ring the target is in, or -1
+     */
+    private int search(Coordinate start, Coordinate target, boolean keepRings) {
+        if (!map.isInBounds(start) || !map.isInBounds(target))
+            throw new IllegalArgumentException("Start and target must be within the map");
+        // Clear only what the last query reached, so a short query does not pay for the whole board
+        for (int i = 0; i < visitedSize; i++)
+            visited[visitedWords[i]] = 0;
+        for (int i = 0; i < activeSize; i++)
+            frontier[active[i]] = 0;
+        ringWords.clear();
+        ringBits.clear();
+        int startWord = wordOf(start.x(), start.y());
+        frontier[startWord] = 1L << start.x();
+        visited[startWord] = frontier[startWord];
+        visitedWords[0] = startWord;
+        visitedSize = 1;
+        active[0] = startWord;
+        activeSize = 1;
+        if (keepRings)
+            keepRing();
+
+        int targetWord = wordOf(target.x(), target.y());
+        long targetBit = 1L << target.x();
+        for (int ring = 0; ; ring++) {
+            if ((visited[targetWord] & targetBit) != 0)
+                return ring;
+            if (!expand())
+                return -1;
+            if (keepRings)
+                keepRing();
+        }
+    }
+
+    /**
+     * Replaces the frontier with the open, unvisited tiles one move away from it, and marks them visited. Only the
+     * words around the frontier's active words are looked at, so a ring costs time in proportion to its own size
+     * rather than to the rows it spans.
+     * @return false if there were none
+     */
+    private boolean expand() {
+        newStamp();
+        int candidateCount = 0;
+        for (int i = 0; i < activeSize; i++) {
+            int word = active[i];
+            int w = word % words;
+            long bits = frontier[word];
+            // A word reaches into its left or right neighbor only through its edge bits
+            int fromW = w > 0 && (bits & 1) != 0 ? w - 1 : w;
+            int toW = w < words - 1 && bits < 0 ? w + 1 : w;
+            int firstRow = Math.max(0, word / words - 1);
+            int lastRow = Math.min(height - 1, word / words + 1);
+            for (int y = firstRow; y <= lastRow; y++)
+                for (int cw = fromW; cw <= toW; cw++) {
+                    int candidate = y * words + cw;
+                    if (stamps[candidate] != stamp) {
+                        stamps[candidate] = stamp;
+                        candidates[candidateCount++] = candidate;
+                    }
+                }
+        }
+
+        int nextSize = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int word = candidates[i];
+            int y = word / words;
+            int w = word - y * words;
+            long reach = spread(word, w);
+            if (y > 0)
+                reach |= spread(word - words, w);
+            if (y < height - 1)
+                reach |= spread(word + words, w);
+            long fresh = reach & open[word] & ~visited[word];
+            if (fresh != 0) {
+                next[word] = fresh;
+                if (visited[word] == 0)
+                    visitedWords[visitedSize++] = word;
+                visited[word] |= fresh;
+                nextActive[nextSize++] = word;
+            }
+        }
+
+        // Leave the old frontier all zero, ready to be filled as the next ring
+        for (int i = 0; i < activeSize; i++)
+            frontier[active[i]] = 0;
+        long[] swapBits = frontier;
+        frontier = next;
+        next = swapBits;
+        int[] swapWords = active;
+        active = nextActive;
+        nextActive = swapWords;
+        activeSize = nextSize;
+        return nextSize > 0;
+    }
+
+    /**
+     * @return The frontier bits of a word spread one tile left and right, carrying bits across from its neighbors
+     */
+    private long spread(int word, int w) {
+        long bits = frontier[word];
+        long reach = bits | bits >>> 1 | bits << 1;
+        if (w > 0)
+            reach |= frontier[word - 1] >>> 63;
+        if (w < words - 1)
+            reach |= frontier[word + 1] << 63;
+        return reach;
+    }
+
+    /**
+     * Keeps the frontier's active words, sorted so that backtracking can look them up by binary search.
+     */
+    private void keepRing() {
+        int[] kept = Arrays.copyOf(active, activeSize);
+        Arrays.sort(kept);
+        long[] bits = new long[activeSize];
+        for (int i = 0; i < activeSize; i++)
+            bits[i] = frontier[kept[i]];
+        ringWords.add(kept);
+        ringBits.add(bits);
+    }
+
+    private boolean inRing(int ring, int x, int y) {
+        int i = Arrays.binarySearch(ringWords.get(ring), wordOf(x, y));
+        return i >= 0 && (ringBits.get(ring)[i] & 1L << x) != 0;
+    }
+
+    private void newStamp() {
+        stamp++;
+        if (stamp == Integer.MAX_VALUE) {
+            stamp = 1;
+            Arrays.fill(stamps, 0);
+        }
+    }
+
+    private int wordOf(int x, int y) {
+        return y * words + (x >>> 6);
+    }
+}
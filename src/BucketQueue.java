@@ -0,0 +1,79 @@
+import java.util.Arrays;
+
+/**
+ * A monotone priority queue of cells for integer distances (Dial's algorithm). Every distance waiting in the queue
+ * lies within maxStepCost of the lowest one, so a ring of maxStepCost + 1 buckets, indexed by distance modulo the ring
+ * size, holds them all without ever mixing two distances in one bucket. Pushing and popping are O(1), amortized over
+ * the empty buckets skipped.
+ *
+ * Cells are never moved between buckets. Lowering a cell's distance pushes it again, and the caller skips the stale
+ * entry when it is popped later (lazy deletion). Bucket arrays are kept between queries, so a reused queue stops
+ * allocating once it has grown to fit its map.
+ */
+public class BucketQueue {
+    private final int[][] buckets;
+    private final int[] sizes;
+    private int size;
+    // Distance of the bucket currently being popped from, the lowest distance in the queue
+    private int current;
+
+    /**
+     * @param maxStepCost the most a single step can add to a distance; 14 for the diagonal step of the 10/14 model
+     */
+    public BucketQueue(int maxStepCost) {
+        buckets = new int[maxStepCost + 1][16];
+        sizes = new int[maxStepCost + 1];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Number of entries, including stale ones not yet popped
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a cell. Its distance must be between the last popped distance and that distance plus maxStepCost.
+     */
+    public void push(int cell, int distance) {
+        int bucket = distance % buckets.length;
+        if (sizes[bucket] == buckets[bucket].length)
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], sizes[bucket] * 2);
+        buckets[bucket][sizes[bucket]++] = cell;
+        size++;
+    }
+
+    /**
+     * Removes a cell with the lowest distance. The queue must not be empty.
+     * @return the cell; its distance is then given by currentDistance()
+     */
+    public int pop() {
+        int bucket = current % buckets.length;
+        while (sizes[bucket] == 0) {
+            current++;
+            bucket = current % buckets.length;
+        }
+        size--;
+        return buckets[bucket][--sizes[bucket]];
+    }
+
+    /**
+     * @return The distance of the cell last popped
+     */
+    public int currentDistance() {
+        return current;
+    }
+
+    /**
+     * Removes every entry and restarts from distance 0, keeping the bucket arrays.
+     */
+    public void clear() {
+        Arrays.fill(sizes, 0);
+        size = 0;
+        current = 0;
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A wall grid too large to hold in memory, stored on disk as square chunks of CHUNK_SIZE x CHUNK_SIZE tiles and
+ * loaded only when one of their tiles is read. Loaded chunks are kept in a bounded cache, evicting the chunk used
+ * least recently, so a search across the world only ever holds the chunks around the region it has explored.
+ *
+ * Chunks with no walls at all, or nothing but walls, are never stored or loaded: every such chunk shares one of two
+ * flyweight chunks. Open terrain therefore costs nothing beyond its entry in the chunk index and the cache.
+ *
+ * The file format is little-endian:
+ * <pre>
+ *   offset  size  field
+ *   0       4     magic "PFCW"
+ *   4       4     format version (currently 1)
+ *   8       4     width
+ *   12      4     height
+ *   16      8     start x, start y
+ *   24      8     target x, target y
+ *   32      8     reserved, zero
+ *   40      ...   chunk index: one long per chunk, row by row. EMPTY_ENTRY or FULL_ENTRY for a flyweight chunk,
+ *                 otherwise the file offset of the chunk's data.
+ *   ...     ...   chunk data: CHUNK_SIZE longs per stored chunk, one per row, with bit i set if tile i of the row is
+ *                 a wall. Tiles past the edge of the world are walls.
+ * </pre>
+ * Not thread-safe; each thread should open its own ChunkedWorld on the file.
+ */
+public class ChunkedWorld implements Grid, Closeable {
+    /**
+     * Width and height of a chunk in tiles; one long holds a chunk row
+     */
+    public static final int CHUNK_SIZE = 64;
+    private static final int CHUNK_SHIFT = 6;
+    private static final int MAGIC = 0x57434650; // "PFCW" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final long EMPTY_ENTRY = 0;
+    private static final long FULL_ENTRY = 1;
+    private static final long[] EMPTY_CHUNK = new long[CHUNK_SIZE];
+    private static final long[] FULL_CHUNK = new long[CHUNK_SIZE];
+    static {
+        Arrays.fill(FULL_CHUNK, -1L);
+    }
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int chunksAcross;
+    private final Coordinate startCoord;
+    private final Coordinate targetCoord;
+    private final int maxChunks;
+    private final LinkedHashMap<Long, long[]> chunks = new LinkedHashMap<>(16, 0.75f, true);
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(CHUNK_SIZE * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    // The chunk read last, checked before the cache since searches read neighboring tiles
+    private long lastChunk = -1;
+    private long[] lastRows;
+    private long chunkLoads;
+    private long flyweightReads;
+
+    /**
+     * Supplies the walls of a world being written, one chunk at a time.
+     */
+    public interface ChunkSource {
+        /**
+         * Fills in one chunk's walls. rows starts zeroed; set bit i of rows[r] to make tile
+         * (chunkX * CHUNK_SIZE + i, chunkY * CHUNK_SIZE + r) a wall. Bits past the edge of the world are ignored.
+         */
+        void fill(int chunkX, int chunkY, long[] rows);
+    }
+
+    private ChunkedWorld(FileChannel channel, int width, int height, Coordinate startCoord, Coordinate targetCoord,
+                         int maxChunks) {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.startCoord = startCoord;
+        this.targetCoord = targetCoord;
+        this.maxChunks = maxChunks;
+        chunksAcross = chunkCount(width);
+    }
+
+    /**
+     * Opens a world file. Only the header is read; chunks are read as their tiles are first needed.
+     * @param maxChunks most chunks held in memory at once. Stored chunks take CHUNK_SIZE longs each, while a
+     * flyweight chunk only takes its cache entry.
+     * @throws IOException if the file cannot be read, or is not a world file this version understands
+     */
+    public static ChunkedWorld open(Path file, int maxChunks) throws IOException {
+        if (maxChunks < 1)
+            throw new IllegalArgumentException("The cache must hold at least one chunk");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a world file, bad magic number: " + file);
+            int version = header.getInt(4);
+            if (version != VERSION)
+                throw new IOException("Unsupported world file version " + version + ": " + file);
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            Coordinate start = new Coordinate(header.getInt(16), header.getInt(20));
+            Coordinate target = new Coordinate(header.getInt(24), header.getInt(28));
+            if (width <= 0 || height <= 0)
+                throw new IOException("Invalid world dimensions " + width + "x" + height + ": " + file);
+            long indexEnd = HEADER_SIZE + (long) chunkCount(width) * chunkCount(height) * Long.BYTES;
+            if (channel.size() < indexEnd)
+                throw new IOException("World file is truncated: " + file);
+            ChunkedWorld world = new ChunkedWorld(channel, width, height, start, target, maxChunks);
+            if (!world.isInBounds(start.x(), start.y()) || !world.isInBounds(target.x(), target.y()))
+                throw new IOException("Start or target lies outside the world: " + file);
+            return world;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a world file chunk by chunk, replacing the file if it exists. Only the chunk index and one chunk are
+     * held in memory, so worlds far larger than the heap can be written.
+     */
+    public static void create(Path file, int width, int height, Coordinate start, Coordinate target,
+                              ChunkSource source) throws IOException {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Invalid world dimensions " + width + "x" + height);
+        int across = chunkCount(width);
+        int down = chunkCount(height);
+        if ((long) across * down > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("World has more chunks than can be indexed: " + width + "x" + height);
+        long[] index = new long[across * down];
+        long[] rows = new long[CHUNK_SIZE];
+        ByteBuffer data = ByteBuffer.allocate(CHUNK_SIZE * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long offset = HEADER_SIZE + (long) index.length * Long.BYTES;
+            for (int chunkY = 0; chunkY < down; chunkY++)
+                for (int chunkX = 0; chunkX < across; chunkX++) {
+                    Arrays.fill(rows, 0);
+                    source.fill(chunkX, chunkY, rows);
+                    padEdges(rows, chunkX, chunkY, width, height);
+                    int chunk = chunkY * across + chunkX;
+                    if (Arrays.equals(rows, EMPTY_CHUNK))
+                        index[chunk] = EMPTY_ENTRY;
+                    else if (Arrays.equals(rows, FULL_CHUNK))
+                        index[chunk] = FULL_ENTRY;
+                    else {
+                        data.clear();
+                        for (long row : rows)
+                            data.putLong(row);
+                        data.flip();
+                        writeFully(channel, data, offset);
+                        index[chunk] = offset;
+                        offset += data.capacity();
+                    }
+                }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+            header.putInt(start.x()).putInt(start.y()).putInt(target.x()).putInt(target.y());
+            header.putLong(0);
+            header.flip();
+            writeFully(channel, header, 0);
+            ByteBuffer indexBuffer = ByteBuffer.allocate(CHUNK_SIZE * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int chunk = 0; chunk < index.length; chunk += CHUNK_SIZE) {
+                indexBuffer.clear();
+                for (int i = chunk; i < Math.min(index.length, chunk + CHUNK_SIZE); i++)
+                    indexBuffer.putLong(index[i]);
+                indexBuffer.flip();
+                writeFully(channel, indexBuffer, HEADER_SIZE + (long) chunk * Long.BYTES);
+            }
+        }
+    }
+
+    /**
+     * Writes the walls, start and target of an in-memory Map as a world file.
+     */
+    public static void save(Map map, Path file) throws IOException {
+        create(file, map.getWidth(), map.getHeight(), map.getStartCoord(), map.getTargetCoord(),
+                (chunkX, chunkY, rows) -> {
+                    int left = chunkX * CHUNK_SIZE;
+                    int top = chunkY * CHUNK_SIZE;
+                    for (int r = 0; r < CHUNK_SIZE && top + r < map.getHeight(); r++)
+                        for (int i = 0; i < CHUNK_SIZE && left + i < map.getWidth(); i++)
+                            if (map.isWall(left + i, top + r))
+                                rows[r] |= 1L << i;
+                });
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    public Coordinate getStartCoord() {
+        return startCoord;
+    }
+
+    public Coordinate getTargetCoord() {
+        return targetCoord;
+    }
+
+    @Override
+    public boolean isInBounds(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Reads the tile's chunk from disk first if it is not already held.
+     * @throws UncheckedIOException if the chunk cannot be read
+     */
+    @Override
+    public boolean isWall(int x, int y) {
+        long[] rows = rowsOf(x >>> CHUNK_SHIFT, y >>> CHUNK_SHIFT);
+        return (rows[y & (CHUNK_SIZE - 1)] & (1L << x)) != 0;
+    }
+
+    /**
+     * @return Number of chunks read from disk so far, including chunks read again after being evicted
+     */
+    public long getChunkLoads() {
+        return chunkLoads;
+    }
+
+    /**
+     * @return Number of times a chunk not held in memory turned out to be a flyweight, needing no data read
+     */
+    public long getFlyweightReads() {
+        return flyweightReads;
+    }
+
+    /**
+     * @return Number of chunks currently held in memory, including references to the flyweights
+     */
+    public int getCachedChunks() {
+        return chunks.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return The rows of the chunk, from the one-chunk memo, the cache, the flyweights, or disk
+     */
+    private long[] rowsOf(int chunkX, int chunkY) {
+        long chunk = (long) chunkY * chunksAcross + chunkX;
+        if (chunk == lastChunk)
+            return lastRows;
+        long[] rows = chunks.get(chunk);
+        if (rows == null)
+            rows = load(chunk);
+        lastChunk = chunk;
+        lastRows = rows;
+        return rows;
+    }
+
+    private long[] load(long chunk) {
+        try {
+            entryBuffer.clear();
+            readFully(channel, entryBuffer, HEADER_SIZE + chunk * Long.BYTES);
+            long offset = entryBuffer.getLong(0);
+            long[] rows;
+            if (offset == EMPTY_ENTRY || offset == FULL_ENTRY) {
+                flyweightReads++;
+                rows = offset == EMPTY_ENTRY ? EMPTY_CHUNK : FULL_CHUNK;
+            }
+            else {
+                readBuffer.clear();
+                readFully(channel, readBuffer, offset);
+                rows = new long[CHUNK_SIZE];
+                readBuffer.asLongBuffer().get(rows);
+                chunkLoads++;
+            }
+            chunks.put(chunk, rows);
+            // Evict least recently used chunks
+            Iterator<long[]> iterator = chunks.values().iterator();
+            while (chunks.size() > maxChunks) {
+                iterator.next();
+                iterator.remove();
+            }
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read chunk " + chunk, e);
+        }
+    }
+
+    /**
+     * Marks every tile of the chunk that lies past the edge of the world as a wall.
+     */
+    private static void padEdges(long[] rows, int chunkX, int chunkY, int width, int height) {
+        int columns = width - chunkX * CHUNK_SIZE;
+        long outside = columns >= CHUNK_SIZE ? 0 : -1L << columns;
+        for (int r = 0; r < CHUNK_SIZE; r++)
+            rows[r] = chunkY * CHUNK_SIZE + r < height ? rows[r] | outside : -1L;
+    }
+
+    private static int chunkCount(int tiles) {
+        return (tiles + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0)
+                throw new IOException("Unexpected end of file at " + (position + buffer.position()));
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer, position + buffer.position());
+    }
+}
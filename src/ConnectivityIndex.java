@@ -0,0 +1,312 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Labels every open tile of a Map with the connected region it belongs to, so that a query between two regions can
+ * be rejected at once instead of searching everything reachable from the start. Regions use the same 8-connected
+ * moves as the searches (Algorithms.dirCodes), including diagonal moves between two walls.
+ *
+ * The labels are kept up to date as the Map is edited. Labels are nodes of a union-find, so removing a wall simply
+ * unions the labels around it. Adding a wall can split a region; the tile's open neighbors are explored outwards in
+ * lockstep, and as soon as one exploration runs out without meeting the others, the piece it covered is given a new
+ * label. The largest piece is never explored in full, so the cost of a split is proportional to the smaller side.
+ *
+ * Labels are never reused, so once as many labels have been made as the map has tiles, the next new label first
+ * renumbers every tile's region densely and drops the labels no tile uses any more.
+ *
+ * Queries only read: paths in the union-find are shortened while editing, never while querying. Several threads may
+ * therefore query at once, such as PathFinders sharing one index, but the Map must not be edited while any of them
+ * is querying.
+ */
+public class ConnectivityIndex implements MapListener {
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    private final Map map;
+    private final int width;
+    private final int height;
+    // Region label of every tile, or -1 for walls
+    private final int[] labels;
+    // Union-find over labels. Labels are never reused, but are renumbered once there are as many as tiles.
+    private int[] labelParent = new int[16];
+    private int labelCount;
+
+    // Workspace for splitting: which exploration first visited each tile, valid where visitStamp == stamp
+    private final int[] visitedBy;
+    private final int[] visitStamp;
+    private int stamp;
+
+    /**
+     * Labels the whole map and starts listening to it. Call close() to stop listening.
+     */
+    public ConnectivityIndex(Map map) {
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+        labels = new int[width * height];
+        visitedBy = new int[width * height];
+        visitStamp = new int[width * height];
+        Arrays.fill(labels, -1);
+
+        int[] queue = new int[width * height];
+        for (int cell = 0; cell < width * height; cell++) {
+            if (labels[cell] >= 0 || map.isWall(cell))
+                continue;
+            // Flood fill a new region from this tile
+            int label = newLabel();
+            int head = 0;
+            int tail = 0;
+            labels[cell] = label;
+            queue[tail++] = cell;
+            while (head < tail) {
+                int current = queue[head++];
+                for (int dir = 0; dir < 8; dir++) {
+                    int next = neighbor(current, dir);
+                    if (next >= 0 && labels[next] < 0 && !map.isWall(next)) {
+                        labels[next] = label;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        map.addListener(this);
+    }
+
+    /**
+     * @return true if a route could exist between the two tiles: both are open and in the same region
+     */
+    public boolean isConnected(Coordinate a, Coordinate b) {
+        int labelA = labels[indexOf(a)];
+        int labelB = labels[indexOf(b)];
+        return labelA >= 0 && labelB >= 0 && find(labelA) == find(labelB);
+    }
+
+    /**
+     * @return An id shared by every tile of the tile's region, or -1 for a wall. Ids can change as the Map is edited.
+     */
+    public int getRegion(Coordinate tile) {
+        int label = labels[indexOf(tile)];
+        return label < 0 ? -1 : find(label);
+    }
+
+    /**
+     * Updates the labels if the tile's walkability changed.
+     */
+    @Override
+    public void tileChanged(Map map, Coordinate tile, int previous, int current) {
+        boolean wasWall = previous == Map.WALL;
+        boolean isWall = current == Map.WALL;
+        if (wasWall == isWall)
+            return;
+        int cell = indexOf(tile);
+        if (wasWall)
+            wallRemoved(cell);
+        else
+            wallAdded(cell);
+    }
+
+    /**
+     * Stops listening to the map.
+     */
+    public void close() {
+        map.removeListener(this);
+    }
+
+    /**
+     * The opened tile joins every region around it into one.
+     */
+    private void wallRemoved(int cell) {
+        int label = newLabel();
+        labels[cell] = label;
+        for (int dir = 0; dir < 8; dir++) {
+            int next = neighbor(cell, dir);
+            if (next >= 0 && labels[next] >= 0)
+                union(label, labels[next]);
+        }
+    }
+
+    /**
+     * Explores outwards from each open neighbor of the new wall, one tile per exploration per round. Explorations
+     * that meet are merged, since they are in the same region. An exploration (or merged group) that runs out of
+     * tiles while another is still going has found a piece cut off from the rest, which is relabeled. Stops as soon
+     * as at most one group is left, which keeps the original label.
+     */
+    private void wallAdded(int cell) {
+        labels[cell] = -1;
+        stamp++;
+        ArrayList<Exploration> explorations = new ArrayList<>();
+        for (int dir = 0; dir < 8; dir++) {
+            int next = neighbor(cell, dir);
+            if (next < 0 || labels[next] < 0 || visitStamp[next] == stamp)
+                continue;
+            Exploration exploration = new Exploration(explorations.size());
+            explorations.add(exploration);
+            visit(exploration, next);
+        }
+
+        int groups = explorations.size();
+        while (groups > 1) {
+            for (Exploration exploration : explorations)
+                if (exploration.head < exploration.tail)
+                    expand(exploration, explorations);
+            groups = 0;
+            for (Exploration exploration : explorations) {
+                if (root(exploration, explorations) != exploration || exploration.relabeled)
+                    continue;
+                groups++;
+            }
+            // Relabel any group that has run out while others remain
+            for (Exploration exploration : explorations) {
+                if (groups <= 1)
+                    break;
+                if (root(exploration, explorations) != exploration || exploration.relabeled
+                        || !isFinished(exploration, explorations))
+                    continue;
+                int label = newLabel();
+                for (Exploration member : explorations)
+                    if (root(member, explorations) == exploration)
+                        for (int i = 0; i < member.tail; i++)
+                            labels[member.cells[i]] = label;
+                exploration.relabeled = true;
+                groups--;
+            }
+        }
+    }
+
+    /**
+     * Explores one tile from the front of an exploration's queue.
+     */
+    private void expand(Exploration exploration, ArrayList<Exploration> explorations) {
+        int current = exploration.cells[exploration.head++];
+        for (int dir = 0; dir < 8; dir++) {
+            int next = neighbor(current, dir);
+            if (next < 0 || labels[next] < 0)
+                continue;
+            if (visitStamp[next] != stamp)
+                visit(exploration, next);
+            else {
+                // Reached a tile another exploration already visited: the two are in the same region
+                Exploration a = root(exploration, explorations);
+                Exploration b = root(explorations.get(visitedBy[next]), explorations);
+                if (a != b)
+                    b.mergedInto = a.id;
+            }
+        }
+    }
+
+    private void visit(Exploration exploration, int cell) {
+        visitStamp[cell] = stamp;
+        visitedBy[cell] = exploration.id;
+        if (exploration.tail == exploration.cells.length)
+            exploration.cells = Arrays.copyOf(exploration.cells, exploration.cells.length * 2);
+        exploration.cells[exploration.tail++] = cell;
+    }
+
+    /**
+     * @return true if no exploration merged into this group has tiles left to explore
+     */
+    private boolean isFinished(Exploration group, ArrayList<Exploration> explorations) {
+        for (Exploration member : explorations)
+            if (root(member, explorations) == group && member.head < member.tail)
+                return false;
+        return true;
+    }
+
+    private static Exploration root(Exploration exploration, ArrayList<Exploration> explorations) {
+        while (exploration.mergedInto >= 0)
+            exploration = explorations.get(exploration.mergedInto);
+        return exploration;
+    }
+
+    private int newLabel() {
+        if (labelCount == labelParent.length) {
+            if (labelCount >= width * height)
+                compact();
+            // Grow unless renumbering freed at least half the labels
+            if (labelCount * 2 > labelParent.length)
+                labelParent = Arrays.copyOf(labelParent, labelParent.length * 2);
+        }
+        labelParent[labelCount] = labelCount;
+        return labelCount++;
+    }
+
+    /**
+     * Renumbers every open tile with its region, counting regions from 0, so that each region has a single label
+     * and the labels of merged or emptied regions are free again.
+     */
+    private void compact() {
+        int[] renumbered = new int[labelCount];
+        Arrays.fill(renumbered, -1);
+        int regions = 0;
+        for (int cell = 0; cell < labels.length; cell++) {
+            if (labels[cell] < 0)
+                continue;
+            int root = compressingFind(labels[cell]);
+            if (renumbered[root] < 0)
+                renumbered[root] = regions++;
+            labels[cell] = renumbered[root];
+        }
+        for (int label = 0; label < regions; label++)
+            labelParent[label] = label;
+        labelCount = regions;
+    }
+
+    /**
+     * @return The root of a label. Writes nothing, so it is safe while other threads query.
+     */
+    private int find(int label) {
+        while (labelParent[label] != label)
+            label = labelParent[label];
+        return label;
+    }
+
+    /**
+     * find for the editing thread, halving the path to the root as it goes.
+     */
+    private int compressingFind(int label) {
+        while (labelParent[label] != label) {
+            labelParent[label] = labelParent[labelParent[label]];
+            label = labelParent[label];
+        }
+        return label;
+    }
+
+    private void union(int a, int b) {
+        int rootA = compressingFind(a);
+        int rootB = compressingFind(b);
+        if (rootA != rootB)
+            labelParent[rootB] = rootA;
+    }
+
+    /**
+     * @return The flat index of the neighbor in direction dir, or -1 if it is outside the map
+     */
+    private int neighbor(int index, int dir) {
+        int x = index % width + DX[dir];
+        int y = index / width + DY[dir];
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            return -1;
+        return y * width + x;
+    }
+
+    private int indexOf(Coordinate tile) {
+        return tile.y() * width + tile.x();
+    }
+
+    /**
+     * One breadth-first exploration started from a neighbor of a new wall. Its queue doubles as the list of every
+     * tile it visited, for relabeling.
+     */
+    private static class Exploration {
+        private final int id;
+        private int[] cells = new int[16];
+        private int head;
+        private int tail;
+        private int mergedInto = -1;
+        private boolean relabeled;
+
+        Exploration(int id) {
+            this.id = id;
+        }
+    }
+}
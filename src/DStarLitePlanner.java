@@ -0,0 +1,249 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An incremental planner (D* Lite) that keeps its search between Map edits. It searches backwards from the target,
+ * storing for every tile its distance to the target (g) and a one-step lookahead of that distance (rhs). When a wall
+ * is added or removed, only the tile and its neighbors have their lookahead recomputed; the next call to getPath
+ * then repairs just the part of the search the edit made inconsistent, instead of searching from scratch.
+ *
+ * The planner listens to its Map, so it is told about every changed tile. Moving the start is handled incrementally
+ * too; moving the target starts a fresh search, since every stored distance is measured to it. Costs use the same
+ * 10/14 model and corner cutting as SearchContext, so routes cost the same as a breadth-first search.
+ *
+ * The planner is not thread-safe; edits and queries must come from the same thread, as they do in the editor.
+ */
+public class DStarLitePlanner implements MapListener {
+    private static final int INFINITY = Integer.MAX_VALUE / 4;
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    private final Map map;
+    private final int width;
+    private final int height;
+    private final int[] g;
+    private final int[] rhs;
+    private final IndexedMinHeap open;
+
+    private Coordinate start;
+    private Coordinate target;
+    // Sum of heuristic distances the start has moved, keeping old keys valid lower bounds (the k_m of D* Lite)
+    private int keyModifier;
+    private int nodesExpanded;
+
+    /**
+     * Creates a planner for the map's current start and target and starts listening to the map. The first call to
+     * getPath does the full initial search. Call close() to stop listening when the planner is discarded.
+     */
+    public DStarLitePlanner(Map map) {
+        this.map = map;
+        width = map.getWidth();
+        height = map.getHeight();
+        g = new int[width * height];
+        rhs = new int[width * height];
+        open = new IndexedMinHeap(width * height);
+        initialize();
+        map.addListener(this);
+    }
+
+    /**
+     * Brings the search up to date with every edit since the last call, then follows it from the start to the target.
+     * @return The cheapest route from the Map's start to its target. nodesExpanded counts only the tiles this call
+     * had to repair.
+     */
+    public PathResult getPath() {
+        if (!map.getTargetCoord().equals(target))
+            initialize();
+        else if (!map.getStartCoord().equals(start)) {
+            keyModifier += Algorithms.octileDistance(start, map.getStartCoord());
+            start = map.getStartCoord();
+        }
+        nodesExpanded = 0;
+        computeShortestPath();
+
+        int current = indexOf(start);
+        if (g[current] >= INFINITY)
+            return new PathResult(false, -1, List.of(), nodesExpanded);
+        ArrayList<Coordinate> path = new ArrayList<>();
+        path.add(start);
+        int goal = indexOf(target);
+        while (current != goal) {
+            // Step to the neighbor that the stored distances say is on a cheapest route
+            int best = -1;
+            int bestCost = INFINITY;
+            for (int dir = 0; dir < 8; dir++) {
+                int next = neighbor(current, dir);
+                if (next < 0)
+                    continue;
+                int cost = cost(current, next, dir);
+                if (cost < INFINITY && cost + g[next] < bestCost) {
+                    bestCost = cost + g[next];
+                    best = next;
+                }
+            }
+            current = best;
+            path.add(new Coordinate(current % width, current / width));
+        }
+        return new PathResult(true, g[indexOf(start)], path, nodesExpanded);
+    }
+
+    /**
+     * Records a wall being added or removed. The edited tile and its neighbors get their lookahead recomputed and
+     * are queued for repair; the repair itself happens on the next getPath.
+     */
+    @Override
+    public void tileChanged(Map map, Coordinate tile, int previous, int current) {
+        if ((previous == Map.WALL) == (current == Map.WALL))
+            return;
+        int changed = indexOf(tile);
+        updateLookahead(changed);
+        for (int dir = 0; dir < 8; dir++) {
+            int next = neighbor(changed, dir);
+            if (next >= 0)
+                updateLookahead(next);
+        }
+    }
+
+    /**
+     * Stops listening to the map.
+     */
+    public void close() {
+        map.removeListener(this);
+    }
+
+    /**
+     * Discards all stored distances and queues a fresh search towards the Map's current target.
+     */
+    private void initialize() {
+        start = map.getStartCoord();
+        target = map.getTargetCoord();
+        keyModifier = 0;
+        Arrays.fill(g, INFINITY);
+        Arrays.fill(rhs, INFINITY);
+        open.clear();
+        int goal = indexOf(target);
+        rhs[goal] = 0;
+        open.push(goal, key(goal));
+    }
+
+    /**
+     * Expands inconsistent tiles in key order until the start's distance is known to be correct.
+     */
+    private void computeShortestPath() {
+        int startIndex = indexOf(start);
+        while (!open.isEmpty() && (open.peekKey() < key(startIndex) || rhs[startIndex] != g[startIndex])) {
+            int u = open.peek();
+            long oldKey = open.peekKey();
+            long newKey = key(u);
+            nodesExpanded++;
+            if (oldKey < newKey)
+                open.update(u, newKey);
+            else if (g[u] > rhs[u]) {
+                // Overconsistent: the tile got cheaper, so fix its distance and pass the improvement on
+                g[u] = rhs[u];
+                open.remove(u);
+                for (int dir = 0; dir < 8; dir++) {
+                    int s = neighbor(u, dir);
+                    if (s < 0)
+                        continue;
+                    int cost = cost(s, u, dir);
+                    if (cost < INFINITY && cost + g[u] < rhs[s] && s != indexOf(target)) {
+                        rhs[s] = cost + g[u];
+                        updateVertex(s);
+                    }
+                }
+            }
+            else {
+                // Underconsistent: the tile got more expensive, so reset it and everything that relied on it
+                g[u] = INFINITY;
+                updateLookahead(u);
+                for (int dir = 0; dir < 8; dir++) {
+                    int s = neighbor(u, dir);
+                    if (s >= 0)
+                        updateLookahead(s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes a tile's lookahead from its neighbors' distances and queues it if it is now inconsistent.
+     */
+    private void updateLookahead(int u) {
+        if (u != indexOf(target)) {
+            int best = INFINITY;
+            for (int dir = 0; dir < 8; dir++) {
+                int s = neighbor(u, dir);
+                if (s < 0)
+                    continue;
+                int cost = cost(u, s, dir);
+                if (cost < INFINITY && g[s] < INFINITY)
+                    best = Math.min(best, cost + g[s]);
+            }
+            rhs[u] = best;
+        }
+        updateVertex(u);
+    }
+
+    /**
+     * Keeps the open list holding exactly the inconsistent tiles (g != rhs), with up to date keys.
+     */
+    private void updateVertex(int u) {
+        boolean inconsistent = g[u] != rhs[u];
+        if (inconsistent && open.contains(u))
+            open.update(u, key(u));
+        else if (inconsistent)
+            open.push(u, key(u));
+        else
+            open.remove(u);
+    }
+
+    /**
+     * @return The D* Lite key: the smaller of g and rhs plus the heuristic to the start in the high 32 bits, and the
+     * smaller of g and rhs in the low 32 bits
+     */
+    private long key(int u) {
+        int distance = Math.min(g[u], rhs[u]);
+        if (distance >= INFINITY)
+            return ((long) INFINITY << 32) | INFINITY;
+        int x = u % width;
+        int y = u / width;
+        int dx = Math.abs(x - start.x());
+        int dy = Math.abs(y - start.y());
+        int heuristic = 10 * Math.max(dx, dy) + 4 * Math.min(dx, dy);
+        return ((long) (distance + heuristic + keyModifier) << 32) | distance;
+    }
+
+    /**
+     * @return The cost of the step between two adjacent tiles in direction dir, or INFINITY if either is a wall
+     */
+    private int cost(int from, int to, int dir) {
+        if (isBlocked(from) || isBlocked(to))
+            return INFINITY;
+        return DX[dir] != 0 && DY[dir] != 0 ? 14 : 10;
+    }
+
+    /**
+     * @return true if the tile is a wall. The start and target need no special case: Map clears a tile when it becomes
+     * the start or target, and never walls either of them.
+     */
+    private boolean isBlocked(int index) {
+        return map.isWall(index);
+    }
+
+    /**
+     * @return The flat index of the neighbor in direction dir, or -1 if it is outside the map
+     */
+    private int neighbor(int index, int dir) {
+        int x = index % width + DX[dir];
+        int y = index / width + DY[dir];
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            return -1;
+        return y * width + x;
+    }
+
+    private int indexOf(Coordinate tile) {
+        return tile.y() * width + tile.x();
+    }
+}
@@ -32,6 +32,8 @@ public class Display {
 
         put("searched", Color.cyan);
         put("frontier", Color.blue);
+        put("searched from target", Color.pink);
+        put("frontier from target", Color.red);
         put("path", Color.magenta);
     }};
 
@@ -40,7 +42,7 @@ public class Display {
 
     // Display elements
     private final JFrame f;
-    private final JButton[][] colorMap;
+    private final GridCanvas colorMap;
     private final JComboBox<String> menu;
 
     // Editor elements
@@ -52,8 +54,16 @@ public class Display {
     private final ArrayList<JComponent> algorithmMenu;
     private final JLabel algorithms;
     protected final JComboBox<String> algorithmSpeed;
+    protected final JComboBox<String> stepsPerFrame;
+    private final JComboBox<String> tieBreaking;
+    private final JLabel stats;
     private final ArrayList<JButton> algorithmElements;
 
+    // Save / Load elements
+    private final ArrayList<JComponent> saveLoadMenu;
+    private final JLabel saveLoad;
+    private final ArrayList<JButton> saveLoadElements;
+
 
     /**
      * Creates a Display object to render a map based on the given Map object's current values. The
@@ -71,13 +81,9 @@ public class Display {
             }
         });
 
-        // ColorMap
-        colorMap = new JButton[map.getHeight()][map.getWidth()];
-        for (int i = 0; i < map.getHeight(); i++) {
-            for (int j = 0; j < map.getWidth(); j++) {
-                initializeColorMapButton(i, j);
-            }
-        }
+        // ColorMap: clicking a tile calls Interface.colorMapClick to change the map and update the necessary tiles
+        colorMap = new GridCanvas(map, this);
+        f.add(colorMap);
 
         // Menu selection dropdown
         menu = new JComboBox<>(Interface.menuOptions);
@@ -94,32 +100,23 @@ public class Display {
         algorithmElements = new ArrayList<>();
         algorithms = new JLabel("Algorithms");
         algorithmSpeed = new JComboBox<>(Interface.algorithmSpeedOptions);
+        stepsPerFrame = new JComboBox<>(Interface.stepsPerFrameOptions);
+        tieBreaking = new JComboBox<>(Algorithms.tieBreakOptions);
+        stats = new JLabel();
         setupAlgorithmMenu();
 
+        // Save / Load Menu
+        saveLoadMenu = new ArrayList<>();
+        saveLoadElements = new ArrayList<>();
+        saveLoad = new JLabel("Save / Load");
+        setupSaveLoadMenu();
+
         // Render the JFrame window
         f.setSize(1200, 800);
         f.setLayout(null);
         f.setVisible(true);
     }
 
-    /**
-     * Initializes a JButton in the given location in colorMap
-     */
-    private void initializeColorMapButton(int i, int j) {
-        JButton b = new JButton();
-        b.setOpaque(true);
-        // Set color based on the map
-        for(String key : Map.legend.keySet())
-            if (map.getMap()[i][j] == Map.legend.get(key))
-                b.setBackground(colors.get(key));
-
-        Coordinate tile = new Coordinate(j, i);
-        // When the button gets pressed, call Interface.colorMapClick to change the map, and then update the necessary colorMap tiles.
-        b.addActionListener(e -> Interface.colorMapClick(map, tile, this));
-        colorMap[i][j] = b;
-        f.add(b);
-    }
-
     /**
      * Sets up the menu dropdown display
      */
@@ -175,30 +172,79 @@ public class Display {
         f.add(algorithms);
 
         // Initialize the algorithmElements and add them to the JFrame
-        JButton breadth = new JButton("Breadth-First");
-        breadth.setFont(new Font("TimesNewRoman", Font.PLAIN, 14));
-        breadth.setBackground(colors.get("target"));
-        breadth.addActionListener(e -> Interface.breadthFirstSearch(map, this));
-        f.add(breadth);
-        algorithmElements.add(breadth);
-        algorithmMenu.add(breadth);
+        for (String algorithm : Algorithms.algorithmOptions) {
+            JButton b = new JButton(algorithm);
+            b.setFont(new Font("TimesNewRoman", Font.PLAIN, 14));
+            b.setBackground(colors.get("target"));
+            b.addActionListener(e -> Interface.runAlgorithm(map, this, algorithm));
+            f.add(b);
+            algorithmElements.add(b);
+            algorithmMenu.add(b);
+        }
+
+        // Stats of the last run
+        stats.setFont(new Font("TimesNewRoman", Font.PLAIN, 12));
+        stats.setVerticalAlignment(SwingConstants.TOP);
+        algorithmMenu.add(stats);
+        f.add(stats);
+
+        // A* tie-breaking selection
+        tieBreaking.setSelectedItem(Interface.tieBreaking);
+        tieBreaking.setFont(new Font("TimesNewRoman", Font.PLAIN, 14));
+        tieBreaking.addActionListener(e -> Interface.tieBreaking = (String) tieBreaking.getSelectedItem());
+        algorithmMenu.add(tieBreaking);
+        f.add(tieBreaking);
 
         // Speed Selection
-        algorithmSpeed.setSelectedIndex(1);
+        algorithmSpeed.setSelectedItem("100ms");
         algorithmSpeed.setFont(new Font("TimesNewRoman", Font.PLAIN, 14));
         algorithmMenu.add(algorithmSpeed);
         f.add(algorithmSpeed);
 
+        // Steps per frame selection
+        stepsPerFrame.setSelectedIndex(0);
+        stepsPerFrame.setFont(new Font("TimesNewRoman", Font.PLAIN, 14));
+        algorithmMenu.add(stepsPerFrame);
+        f.add(stepsPerFrame);
+
         // Hide from view
         showAlgorithmMenu(false);
     }
 
+    /**
+     * Sets up the components for the save / load menu, hides it from view.
+     */
+    private void setupSaveLoadMenu(){
+        saveLoad.setFont(new Font("TimesNewRoman", Font.PLAIN, 30));
+        saveLoad.setHorizontalAlignment(SwingConstants.CENTER);
+        saveLoad.setBackground(Color.lightGray);
+        saveLoadMenu.add(saveLoad);
+        f.add(saveLoad);
+
+        JButton save = new JButton("Save");
+        save.addActionListener(e -> Interface.saveMap(map, f));
+        JButton load = new JButton("Load");
+        load.addActionListener(e -> Interface.loadMap(f));
+        for (JButton b : new JButton[]{save, load}) {
+            b.setFont(new Font("TimesNewRoman", Font.PLAIN, 18));
+            b.setBackground(colors.get("empty"));
+            f.add(b);
+            saveLoadMenu.add(b);
+            saveLoadElements.add(b);
+        }
+
+        // Hide from view
+        showSaveLoadMenu(false);
+    }
+
     /**
      * changeMenu hides the current menu and sets the selected option to an active state. Automatically called when
      * the JComboBox is used.
      * @param menu Name of selected menu type. All options can be found in the static Interface.menuOptions.
      */
     public void changeMenu(String menu){
+        // A search running in the background must not see the map being edited
+        Interface.stopAlgorithm();
         // First loop hides menu, second loop shows the new menu
         for(Boolean bool : new boolean[]{false, true}) {
             if (Interface.menuType.equals("editor")) {
@@ -207,6 +253,8 @@ public class Display {
             }
             else if (Interface.menuType.equals("algorithms"))
                 showAlgorithmMenu(bool);
+            else if (Interface.menuType.equals("load/save"))
+                showSaveLoadMenu(bool);
             // After first loop, change the menuType so the next loop activates the new menu
             Interface.menuType = menu;
         }
@@ -230,6 +278,15 @@ public class Display {
             j.setVisible(bool);
     }
 
+    /**
+     * Displays or hides the save / load menu. Does not impact resizing while hidden.
+     * @param bool True for visible, false for hidden
+     */
+    public void showSaveLoadMenu(boolean bool) {
+        for(JComponent j : saveLoadMenu)
+            j.setVisible(bool);
+    }
+
     /**
      * Called automatically by the ComponentListener. Resizes the components if the JFrame is resized
      * by a user.
@@ -238,15 +295,14 @@ public class Display {
         // Set the window dimensions, and the resulting tile dimensions
         int WINDOW_WIDTH = f.getWidth();
         int WINDOW_HEIGHT = f.getHeight();
-        int tileWidth = (WINDOW_WIDTH * 3 / 4) / map.getWidth();
-        int tileHeight = (WINDOW_HEIGHT - 40) / map.getHeight();
+        // Keep tiles a whole number of pixels while they are large enough to show as a grid
+        int tileWidth = Math.max(1, (WINDOW_WIDTH * 3 / 4) / map.getWidth());
+        int tileHeight = Math.max(1, (WINDOW_HEIGHT - 40) / map.getHeight());
+        int gridWidth = Math.min(WINDOW_WIDTH * 3 / 4, tileWidth * map.getWidth());
+        int gridHeight = Math.min(WINDOW_HEIGHT - 40, tileHeight * map.getHeight());
 
         // Update the colorMap dimensions
-        for (int i = 0; i < map.getHeight(); i++) {
-            for (int j = 0; j < map.getWidth(); j++) {
-                colorMap[i][j].setBounds(1 + j * tileWidth, 1 + i * tileHeight, tileWidth - 1, tileHeight - 1);
-            }
-        }
+        colorMap.setBounds(0, 0, gridWidth + 1, gridHeight + 1);
 
         // Menu dropdown
         menu.setBounds(WINDOW_WIDTH * 4 / 5, 5, WINDOW_WIDTH * 3 / 20, WINDOW_HEIGHT / 20);
@@ -262,8 +318,23 @@ public class Display {
         // Algorithm Menu
         algorithms.setBounds(WINDOW_WIDTH * 3/4, WINDOW_HEIGHT / 18, WINDOW_WIDTH / 4, WINDOW_HEIGHT / 15);
         // Update the algorithmElements dimensions
-        algorithmElements.get(0).setBounds(WINDOW_WIDTH * 13/16, WINDOW_HEIGHT / 3, WINDOW_WIDTH / 8, WINDOW_HEIGHT / 6);
-        algorithmSpeed.setBounds(WINDOW_WIDTH * 13/16, WINDOW_HEIGHT * 9 / 10, WINDOW_WIDTH / 8, WINDOW_HEIGHT / 20);
+        // Buttons shrink to fit above the tie-breaking selection as more algorithms are added
+        int buttonSpacing = Math.min(WINDOW_HEIGHT / 8, WINDOW_HEIGHT * 9 / 20 / algorithmElements.size());
+        for (int i = 0; i < algorithmElements.size(); i++) {
+            JButton b = algorithmElements.get(i);
+            b.setBounds(WINDOW_WIDTH * 13/16, WINDOW_HEIGHT * 2 / 15 + i * buttonSpacing, WINDOW_WIDTH / 8, buttonSpacing * 4 / 5);
+        }
+        stats.setBounds(WINDOW_WIDTH * 13/16, WINDOW_HEIGHT * 3 / 5, WINDOW_WIDTH / 6, WINDOW_HEIGHT * 3 / 20);
+        tieBreaking.setBounds(WINDOW_WIDTH * 13/16, WINDOW_HEIGHT * 3 / 4, WINDOW_WIDTH / 8, WINDOW_HEIGHT / 20);
+        algorithmSpeed.setBounds(WINDOW_WIDTH * 13/16, WINDOW_HEIGHT * 33 / 40, WINDOW_WIDTH / 8, WINDOW_HEIGHT / 20);
+        stepsPerFrame.setBounds(WINDOW_WIDTH * 13/16, WINDOW_HEIGHT * 9 / 10, WINDOW_WIDTH / 8, WINDOW_HEIGHT / 20);
+
+        // Save / Load Menu
+        saveLoad.setBounds(WINDOW_WIDTH * 3/4, WINDOW_HEIGHT / 18, WINDOW_WIDTH / 4, WINDOW_HEIGHT / 15);
+        for (int i = 0; i < saveLoadElements.size(); i++) {
+            JButton b = saveLoadElements.get(i);
+            b.setBounds(WINDOW_WIDTH * 13 / 16, WINDOW_HEIGHT * 2 / 15 + i * WINDOW_HEIGHT / 5, WINDOW_WIDTH / 8, WINDOW_HEIGHT / 6);
+        }
 
     }
 
@@ -272,11 +343,7 @@ public class Display {
      * will preserve highlighted squares.
      */
     public void updateColorMap() {
-        int[][] mapValues = map.getMap();
-        for(int row=0; row<mapValues.length; row++)
-            for(int col=0; col<mapValues[0].length; col++) {
-                updateColorMap(new Coordinate(col, row));
-            }
+        colorMap.refresh();
     }
 
     /**
@@ -284,37 +351,46 @@ public class Display {
      * @param toUpdate tile to update color of
      */
     public void updateColorMap(Coordinate toUpdate) {
-        int[][] mapValues = map.getMap();
-        for(String key : Map.legend.keySet()) {
-            if (mapValues[toUpdate.y()][toUpdate.x()] == Map.legend.get(key)) {
-                colorMap[toUpdate.y()][toUpdate.x()].setBackground(colors.get(key));
-                return;
-            }
-        }
+        colorMap.refresh(toUpdate);
     }
 
     /**
      * Changes the color of the tile to either searched or frontier, based on searchStatus. Only applies
      * if the tile is an empty square. Coordinate must be in bounds.
      * @param tile Coordinate to display color
-     * @param searchStatus string code, either "frontier" or "searched"
+     * @param searchStatus string code: "frontier" or "searched", or for the target side of a bidirectional search
+     * "frontier from target" or "searched from target"
      */
     public void showSearch(Coordinate tile, String searchStatus) {
-        if (map.getMap()[tile.y()][tile.x()] == Map.legend.get("empty"))
-            colorMap[tile.y()][tile.x()].setBackground(colors.get(searchStatus));
+        if (map.getTile(tile) == Map.EMPTY)
+            colorMap.setColor(tile, colors.get(searchStatus));
+    }
+
+    /**
+     * Shows the counters of the last completed search on the algorithm menu
+     */
+    public void showStats(SearchMetrics metrics) {
+        String time = metrics.nanos() > 0 ? String.format("%.2f ms", metrics.nanos() / 1e6) : "not recorded";
+        String route = metrics.routeExists()
+                ? "cost " + metrics.cost() + ", " + metrics.pathLength() + " tiles"
+                : "no route";
+        stats.setText("<html>" + metrics.algorithm() + ": " + route
+                + "<br>expanded " + metrics.nodesExpanded() + ", generated " + metrics.nodesGenerated()
+                + "<br>decrease-keys " + metrics.decreaseKeys() + ", peak open " + metrics.peakOpenSize()
+                + "<br>search time " + time + "</html>");
     }
 
     /**
      * Removes all highlighted tiles (makes them empty tiles instead)
      */
     public void clearHighlighted() {
-        int[][] mapValues = map.getMap();
-        for(int row = 0; row<mapValues.length; row++)
-            for(int col=0; col<mapValues[0].length; col++)
-                if(mapValues[row][col] == Map.legend.get("highlight")) {
-                    Coordinate highlightedTile = new Coordinate(col, row);
+        for(int row = 0; row<map.getHeight(); row++)
+            for(int col=0; col<map.getWidth(); col++) {
+                Coordinate highlightedTile = new Coordinate(col, row);
+                if(map.getTile(highlightedTile) == Map.HIGHLIGHT) {
                     map.setEmpty(highlightedTile);
                     updateColorMap(highlightedTile);
                 }
+            }
     }
 }
@@ -0,0 +1,239 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The distance from every tile of a Map to one target, and the direction of the first step of a cheapest route from
+ * each tile, computed once with a single Dijkstra search outwards from the target. Any number of agents heading to
+ * the same target can then read their next step in constant time instead of each running a search.
+ *
+ * The field listens to its Map and repairs itself after every edit rather than recomputing from scratch:
+ * <ul>
+ *   <li>A new wall can only lengthen routes that passed through it. Those are exactly the tiles whose steps lead
+ *   through the wall, so only they are reset and searched again, starting from the untouched tiles around them.</li>
+ *   <li>A removed wall can only shorten routes. The opened tile takes its distance from its neighbors, and the
+ *   improvement is spread outwards until it no longer makes anything cheaper.</li>
+ * </ul>
+ * Costs use the same 10/14 model and corner cutting as SearchContext. Not thread-safe; edits and queries must come
+ * from the same thread.
+ */
+public class FlowField implements MapListener {
+    private static final int INFINITY = Integer.MAX_VALUE / 4;
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final String[] DIRECTION_NAMES = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+
+    private final Map map;
+    private final Coordinate target;
+    private final int width;
+    private final int height;
+    private final int[] distance;
+    // Index into DX/DY of each tile's next step towards the target, or -1 where there is none
+    private final byte[] direction;
+    private final IndexedMinHeap open;
+
+    /**
+     * Computes the field for the target and starts listening to the map. Call close() to stop listening.
+     */
+    public FlowField(Map map, Coordinate target) {
+        if (!map.isInBounds(target))
+            throw new IllegalArgumentException("Target must be within the map");
+        this.map = map;
+        this.target = target;
+        width = map.getWidth();
+        height = map.getHeight();
+        distance = new int[width * height];
+        direction = new byte[width * height];
+        open = new IndexedMinHeap(width * height);
+
+        Arrays.fill(distance, INFINITY);
+        Arrays.fill(direction, (byte) -1);
+        int goal = indexOf(target);
+        if (!map.isWall(goal)) {
+            distance[goal] = 0;
+            open.push(goal, 0);
+            propagate();
+        }
+        map.addListener(this);
+    }
+
+    public Coordinate getTarget() {
+        return target;
+    }
+
+    /**
+     * @return true if the target can be reached from the tile
+     */
+    public boolean isReachable(Coordinate tile) {
+        return distance[indexOf(tile)] < INFINITY;
+    }
+
+    /**
+     * @return The cost of the cheapest route from the tile to the target, or -1 if there is none
+     */
+    public int getDistance(Coordinate tile) {
+        int d = distance[indexOf(tile)];
+        return d < INFINITY ? d : -1;
+    }
+
+    /**
+     * @return The key in Algorithms.dirCodes of the first step from the tile towards the target, or null at the
+     * target itself or where the target cannot be reached
+     */
+    public String getDirection(Coordinate tile) {
+        int dir = direction[indexOf(tile)];
+        return dir < 0 ? null : DIRECTION_NAMES[dir];
+    }
+
+    /**
+     * @return The tile to move to from the given tile, or null at the target itself or where the target cannot be
+     * reached
+     */
+    public Coordinate getNextStep(Coordinate tile) {
+        int dir = direction[indexOf(tile)];
+        return dir < 0 ? null : new Coordinate(tile.x() + DX[dir], tile.y() + DY[dir]);
+    }
+
+    /**
+     * Follows the field from the given tile to the target.
+     * @return The full route, in the same form as every other search. No tiles are expanded to answer it.
+     */
+    public PathResult getPath(Coordinate from) {
+        if (!isReachable(from))
+            return new PathResult(false, -1, List.of(), 0);
+        ArrayList<Coordinate> path = new ArrayList<>();
+        for (Coordinate tile = from; tile != null; tile = getNextStep(tile))
+            path.add(tile);
+        return new PathResult(true, getDistance(from), path, 0);
+    }
+
+    /**
+     * Repairs the field if the tile's walkability changed.
+     */
+    @Override
+    public void tileChanged(Map map, Coordinate tile, int previous, int current) {
+        boolean wasWall = previous == Map.WALL;
+        boolean isWall = current == Map.WALL;
+        if (wasWall == isWall)
+            return;
+        int cell = indexOf(tile);
+        if (wasWall)
+            wallRemoved(cell);
+        else
+            wallAdded(cell);
+    }
+
+    /**
+     * Stops listening to the map.
+     */
+    public void close() {
+        map.removeListener(this);
+    }
+
+    /**
+     * Gives the opened tile its distance from the best of its neighbors, then spreads the improvement outwards.
+     */
+    private void wallRemoved(int cell) {
+        if (cell == indexOf(target)) {
+            distance[cell] = 0;
+            direction[cell] = -1;
+        }
+        else
+            relaxFromNeighbors(cell);
+        if (distance[cell] < INFINITY) {
+            open.push(cell, distance[cell]);
+            propagate();
+        }
+    }
+
+    /**
+     * Resets every tile whose route led through the new wall, then searches again from the untouched tiles around
+     * them. Every other tile's route avoids the wall, and nothing can have become cheaper, so they are left alone.
+     */
+    private void wallAdded(int cell) {
+        if (distance[cell] >= INFINITY)
+            return;
+        // Collect the tiles whose chain of steps passes through the wall
+        int[] affected = new int[16];
+        int count = 0;
+        affected[count++] = cell;
+        for (int i = 0; i < count; i++) {
+            int current = affected[i];
+            for (int dir = 0; dir < 8; dir++) {
+                int next = neighbor(current, dir);
+                if (next >= 0 && direction[next] >= 0 && neighbor(next, direction[next]) == current) {
+                    if (count == affected.length)
+                        affected = Arrays.copyOf(affected, count * 2);
+                    affected[count++] = next;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            distance[affected[i]] = INFINITY;
+            direction[affected[i]] = -1;
+        }
+        // Seed the search from whatever still-valid neighbors each reset tile has
+        for (int i = 1; i < count; i++) {
+            relaxFromNeighbors(affected[i]);
+            if (distance[affected[i]] < INFINITY)
+                open.push(affected[i], distance[affected[i]]);
+        }
+        propagate();
+    }
+
+    /**
+     * Sets the tile's distance and direction from its cheapest open neighbor.
+     */
+    private void relaxFromNeighbors(int cell) {
+        for (int dir = 0; dir < 8; dir++) {
+            int next = neighbor(cell, dir);
+            if (next < 0 || distance[next] >= INFINITY || map.isWall(next))
+                continue;
+            int candidate = distance[next] + stepCost(dir);
+            if (candidate < distance[cell]) {
+                distance[cell] = candidate;
+                direction[cell] = (byte) dir;
+            }
+        }
+    }
+
+    /**
+     * Dijkstra outwards from the tiles in the open list, lowering distances wherever a cheaper route is found.
+     */
+    private void propagate() {
+        while (!open.isEmpty()) {
+            int current = open.pop();
+            for (int dir = 0; dir < 8; dir++) {
+                int next = neighbor(current, dir);
+                if (next < 0 || map.isWall(next))
+                    continue;
+                int candidate = distance[current] + stepCost(dir);
+                if (candidate < distance[next]) {
+                    distance[next] = candidate;
+                    // The step from next back to current is the opposite direction
+                    direction[next] = (byte) ((dir + 4) % 8);
+                    open.pushOrDecrease(next, candidate);
+                }
+            }
+        }
+    }
+
+    private static int stepCost(int dir) {
+        return DX[dir] != 0 && DY[dir] != 0 ? 14 : 10;
+    }
+
+    /**
+     * @return The flat index of the neighbor in direction dir, or -1 if it is outside the map
+     */
+    private int neighbor(int index, int dir) {
+        int x = index % width + DX[dir];
+        int y = index / width + DY[dir];
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            return -1;
+        return y * width + x;
+    }
+
+    private int indexOf(Coordinate tile) {
+        return tile.y() * width + tile.x();
+    }
+}
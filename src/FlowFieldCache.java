@@ -0,0 +1,84 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps FlowFields for several targets of one Map, so that groups of agents heading to different targets can all read
+ * their next step without searching. Each field keeps itself up to date with edits to the Map. When more than
+ * maxFields targets are in use, the field used least recently is evicted and stops listening to the Map.
+ *
+ * Not thread-safe; edits and queries must come from the same thread.
+ */
+public class FlowFieldCache {
+    private final Map map;
+    private final int maxFields;
+    private final LinkedHashMap<Coordinate, FlowField> fields = new LinkedHashMap<>(16, 0.75f, true);
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxFields most fields held at once. Each field uses about 21 bytes per tile of the map.
+     */
+    public FlowFieldCache(Map map, int maxFields) {
+        if (maxFields < 1)
+            throw new IllegalArgumentException("The cache must hold at least one field");
+        this.map = map;
+        this.maxFields = maxFields;
+    }
+
+    /**
+     * @return The field for the Map's own target
+     */
+    public FlowField getField() {
+        return getField(map.getTargetCoord());
+    }
+
+    /**
+     * @return The field for the target, computing it if it is not already held
+     */
+    public FlowField getField(Coordinate target) {
+        FlowField field = fields.get(target);
+        if (field != null) {
+            hits++;
+            return field;
+        }
+        misses++;
+        field = new FlowField(map, target);
+        fields.put(target, field);
+        // Evict least recently used fields
+        Iterator<FlowField> iterator = fields.values().iterator();
+        while (fields.size() > maxFields) {
+            iterator.next().close();
+            iterator.remove();
+        }
+        return field;
+    }
+
+    /**
+     * @return The tile to move to from the given tile on the way to the target, or null at the target itself or
+     * where the target cannot be reached
+     */
+    public Coordinate getNextStep(Coordinate from, Coordinate target) {
+        return getField(target).getNextStep(from);
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public int size() {
+        return fields.size();
+    }
+
+    /**
+     * Stops every held field listening to the map and empties the cache.
+     */
+    public void clear() {
+        for (FlowField field : fields.values())
+            field.close();
+        fields.clear();
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * The read-only view of a grid of tiles that a search needs: its size, and which tiles are walls. Implemented by Map,
+ * which holds every tile in memory, and by ChunkedWorld, which loads tiles from disk as they are read.
+ */
+public interface Grid {
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * @return true if (x, y) lies within the grid
+     */
+    boolean isInBounds(int x, int y);
+
+    /**
+     * @return true if the tile at (x, y) is a wall. The tile must be within the grid.
+     */
+    boolean isWall(int x, int y);
+}
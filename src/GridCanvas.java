@@ -0,0 +1,139 @@
+import javax.swing.JComponent;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws the tiles of a Map as a single component. Every tile is one pixel of a backing BufferedImage, which is scaled
+ * up to fill the component when painted. Changing a tile's color only writes its pixel and repaints the rectangle the
+ * tile covers on screen, so large maps can be animated without one Swing component per tile.
+ *
+ * Clicks are mapped back to the tile under the mouse and passed on to Interface.colorMapClick.
+ */
+public class GridCanvas extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Tiles at least this many pixels wide and tall are drawn with a one pixel gap between them, as a grid.
+     */
+    private static final int GRID_LINE_MIN_TILE = 6;
+
+    private final Map map;
+    private final BufferedImage image;
+    // Colors of each tile code in Map.legend, as packed RGB
+    private final int[] tileColors = new int[Map.tileNames.length];
+
+    public GridCanvas(Map map, Display display) {
+        this.map = map;
+        image = new BufferedImage(map.getWidth(), map.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int code = 0; code < Map.tileNames.length; code++)
+            tileColors[code] = Display.colors.get(Map.tileNames[code]).getRGB();
+        setOpaque(true);
+        setBackground(Color.lightGray);
+        refresh();
+
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                Coordinate tile = tileAt(e.getX(), e.getY());
+                if (tile != null)
+                    Interface.colorMapClick(map, tile, display);
+            }
+        });
+    }
+
+    /**
+     * Redraws every tile from the Map, removing any search colors, and repaints the whole component.
+     */
+    public void refresh() {
+        int width = map.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < width; x++)
+                row[x] = tileColors[map.getTile(new Coordinate(x, y))];
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        repaint();
+    }
+
+    /**
+     * Redraws one tile from the Map.
+     */
+    public void refresh(Coordinate tile) {
+        setColor(tile, tileColors[map.getTile(tile)]);
+    }
+
+    /**
+     * Colors one tile, repainting only the area it covers.
+     */
+    public void setColor(Coordinate tile, Color color) {
+        setColor(tile, color.getRGB());
+    }
+
+    private void setColor(Coordinate tile, int rgb) {
+        if (image.getRGB(tile.x(), tile.y()) == rgb)
+            return;
+        image.setRGB(tile.x(), tile.y(), rgb);
+        repaint(tileBounds(tile.x(), tile.y()));
+    }
+
+    /**
+     * @return The tile under the given point of the component, or null if the point is outside the grid
+     */
+    public Coordinate tileAt(int px, int py) {
+        if (px < 0 || py < 0 || px >= getWidth() || py >= getHeight())
+            return null;
+        int x = (int) ((long) px * map.getWidth() / getWidth());
+        int y = (int) ((long) py * map.getHeight() / getHeight());
+        return new Coordinate(x, y);
+    }
+
+    /**
+     * Paints only the tiles inside the clip, which is just the dirty area when individual tiles have changed.
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        Coordinate first = tileAt(clip.x, clip.y);
+        Coordinate last = tileAt(Math.min(clip.x + clip.width, getWidth()) - 1,
+                Math.min(clip.y + clip.height, getHeight()) - 1);
+        if (first == null || last == null)
+            return;
+        boolean gridLines = getWidth() / map.getWidth() >= GRID_LINE_MIN_TILE
+                && getHeight() / map.getHeight() >= GRID_LINE_MIN_TILE;
+        if (!gridLines) {
+            // Scale the visible block of tiles straight from the image
+            Rectangle from = tileBounds(first.x(), first.y());
+            Rectangle to = tileBounds(last.x(), last.y());
+            g.drawImage(image, from.x, from.y, to.x + to.width, to.y + to.height,
+                    first.x(), first.y(), last.x() + 1, last.y() + 1, null);
+            return;
+        }
+        for (int y = first.y(); y <= last.y(); y++)
+            for (int x = first.x(); x <= last.x(); x++) {
+                Rectangle bounds = tileBounds(x, y);
+                g.setColor(new Color(image.getRGB(x, y)));
+                g.fillRect(bounds.x + 1, bounds.y + 1, bounds.width - 1, bounds.height - 1);
+            }
+    }
+
+    /**
+     * @return The area of the component covered by a tile
+     */
+    private Rectangle tileBounds(int x, int y) {
+        int left = (int) ((long) x * getWidth() / map.getWidth());
+        int top = (int) ((long) y * getHeight() / map.getHeight());
+        int right = (int) ((long) (x + 1) * getWidth() / map.getWidth());
+        int bottom = (int) ((long) (y + 1) * getHeight() / map.getHeight());
+        return new Rectangle(left, top, Math.max(1, right - left), Math.max(1, bottom - top));
+    }
+}
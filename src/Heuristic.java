@@ -0,0 +1,19 @@
+/**
+ * A lower bound on the cost of the cheapest route between two tiles, which A* and Jump Point can use in place of the
+ * octile distance. It must never overestimate, or the searches may return routes that are not the cheapest.
+ */
+public interface Heuristic {
+    /**
+     * @param from flat index (y * width + x) of the tile being estimated from
+     * @param to flat index of the target
+     * @return A cost no greater than that of the cheapest route between the two tiles
+     */
+    int estimate(int from, int to);
+
+    /**
+     * Called by a search as it starts, before its first estimate, so that work left over from edits to the Map is done
+     * then rather than in the middle of a search. Does nothing by default.
+     */
+    default void prepare() {
+    }
+}
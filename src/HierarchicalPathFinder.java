@@ -0,0 +1,561 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Hierarchical pathfinding (HPA*). The Map is divided into square clusters. Wherever a route can cross from one
+ * cluster into a neighboring one, an entrance is recorded as a pair of adjacent tiles (a transition). The tiles of
+ * every transition become nodes of a small abstract graph, connected by the transitions themselves and by the
+ * precomputed cheapest route between each pair of nodes inside the same cluster.
+ *
+ * A query first links the start and target into the abstract graph, searches that graph with A*, and then refines
+ * each abstract step into tiles with a search confined to a single cluster. Long queries therefore search a graph
+ * far smaller than the map, and only open the clusters the route passes through. Routes are complete (a route is
+ * found whenever one exists) but are not always the cheapest possible, since each entrance is crossed at a fixed
+ * tile.
+ *
+ * The abstraction listens to its Map. An edit inside a cluster only recomputes that cluster's internal routes; an
+ * edit on a cluster's edge also rebuilds the entrances on that cluster's borders and the internal routes of the
+ * clusters across them. Not thread-safe.
+ */
+public class HierarchicalPathFinder implements MapListener {
+    private static final int INFINITY = Integer.MAX_VALUE / 4;
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    /**
+     * Entrances at least this many tiles wide get a transition at each end rather than one in the middle.
+     */
+    private static final int WIDE_ENTRANCE = 6;
+
+    private final Map map;
+    private final int width;
+    private final int height;
+    private final int clusterSize;
+    private final int clustersX;
+    private final int clustersY;
+
+    // Transitions on the border between cluster (cx, cy) and its right neighbor, its lower neighbor, and the two
+    // diagonal pairs at its bottom-right corner. Each transition is {cellA, cellB, cost}.
+    private final List<ArrayList<int[]>> rightBorders;
+    private final List<ArrayList<int[]>> lowerBorders;
+    private final List<ArrayList<int[]>> mainCorners;
+    private final List<ArrayList<int[]>> antiCorners;
+    // For every cluster, its nodes and the cheapest in-cluster cost between each pair of them
+    private final int[][] clusterNodes;
+    private final int[][][] clusterDistances;
+    // For every cluster, the transitions leaving its nodes as {partner tile, cost} pairs: those of node i are
+    // transitionEdges[cluster][transitionOffsets[cluster][i], transitionOffsets[cluster][i + 1])
+    private final int[][] transitionOffsets;
+    private final int[][] transitionEdges;
+    // Abstract nodes numbered densely, cluster by cluster: node i of a cluster is number nodeOffsets[cluster] + i, and
+    // nodeCells maps each number back to its tile. Two more numbers after the last node stand for a query's start and
+    // target. Renumbered before the next query whenever a cluster is rebuilt.
+    private final int[] nodeOffsets;
+    private int[] nodeCells = new int[0];
+    private boolean renumber = true;
+
+    // Workspace for searches confined to one cluster, indexed by position within the cluster
+    private final int[] localDistance;
+    private final int[] localParent;
+    private final IndexedMinHeap localOpen;
+    // Workspace for the abstract search, indexed by node number and grown with the graph. visited[node] == search
+    // marks nodes touched by the current query, so nothing needs clearing between queries.
+    private int[] abstractDistance = new int[0];
+    private int[] abstractParent = new int[0];
+    private int[] visited = new int[0];
+    private final IndexedMinHeap abstractOpen = new IndexedMinHeap(0);
+    private int search;
+    // The edges of the node being expanded as {next, cost} pairs, refilled for every node
+    private int[] edges = new int[16];
+    // In-cluster costs of the current query: from its start to each node of the start's cluster, and from each node
+    // of the target's cluster to its target, INFINITY where there is no route
+    private int[] sourceLinks = new int[0];
+    private int[] goalLinks = new int[0];
+
+    /**
+     * Builds the abstraction for the whole map and starts listening to it. Call close() to stop listening.
+     * @param clusterSize width and height of each cluster, in tiles. 16 suits most maps.
+     */
+    public HierarchicalPathFinder(Map map, int clusterSize) {
+        if (clusterSize < 2)
+            throw new IllegalArgumentException("Clusters must be at least 2 tiles wide");
+        this.map = map;
+        this.clusterSize = clusterSize;
+        width = map.getWidth();
+        height = map.getHeight();
+        clustersX = (width + clusterSize - 1) / clusterSize;
+        clustersY = (height + clusterSize - 1) / clusterSize;
+        int clusters = clustersX * clustersY;
+        rightBorders = new ArrayList<>(Collections.nCopies(clusters, null));
+        lowerBorders = new ArrayList<>(Collections.nCopies(clusters, null));
+        mainCorners = new ArrayList<>(Collections.nCopies(clusters, null));
+        antiCorners = new ArrayList<>(Collections.nCopies(clusters, null));
+        clusterNodes = new int[clusters][];
+        clusterDistances = new int[clusters][][];
+        transitionOffsets = new int[clusters][];
+        transitionEdges = new int[clusters][];
+        nodeOffsets = new int[clusters + 1];
+        localDistance = new int[clusterSize * clusterSize];
+        localParent = new int[clusterSize * clusterSize];
+        localOpen = new IndexedMinHeap(clusterSize * clusterSize);
+
+        for (int cluster = 0; cluster < clusters; cluster++)
+            buildBorders(cluster);
+        for (int cluster = 0; cluster < clusters; cluster++)
+            buildCluster(cluster);
+        map.addListener(this);
+    }
+
+    /**
+     * Finds a route between the Map's own start and target tiles.
+     */
+    public PathResult findPath() {
+        return findPath(map.getStartCoord(), map.getTargetCoord());
+    }
+
+    /**
+     * Finds a route between any two tiles of the Map.
+     * @return The route tile by tile, in the same form as every other search. nodesExpanded counts abstract nodes
+     * plus the tiles expanded while refining.
+     */
+    public PathResult findPath(Coordinate start, Coordinate target) {
+        boolean recording = SearchStats.isRecording();
+        long begin = recording ? System.nanoTime() : 0;
+        PathResult result = findRoute(start, target);
+        if (recording)
+            SearchStats.record("Hierarchical", result, System.nanoTime() - begin);
+        return result;
+    }
+
+    private PathResult findRoute(Coordinate start, Coordinate target) {
+        int source = indexOf(start);
+        int goal = indexOf(target);
+        int expanded = 0;
+        numberNodes();
+        int sourceNode = nodeCells.length - 2;
+        int goalNode = nodeCells.length - 1;
+        nodeCells[sourceNode] = source;
+        nodeCells[goalNode] = goal;
+
+        // Link the start and target to the nodes of their clusters
+        int sourceCluster = clusterOf(source);
+        int goalCluster = clusterOf(goal);
+        expanded += searchCluster(sourceCluster, source, -1);
+        sourceLinks = linkCosts(sourceLinks, sourceCluster);
+        int direct = sourceCluster == goalCluster ? localDistance[local(sourceCluster, goal)] : INFINITY;
+        expanded += searchCluster(goalCluster, goal, -1);
+        goalLinks = linkCosts(goalLinks, goalCluster);
+
+        // A* over the abstract graph, keyed by f in the high 32 bits and g in the low 32 bits
+        search++;
+        abstractOpen.clear();
+        visit(sourceNode, 0, -1);
+        abstractOpen.push(sourceNode, (long) octile(source, goal) << 32);
+        boolean found = false;
+        while (!abstractOpen.isEmpty()) {
+            int node = abstractOpen.pop();
+            expanded++;
+            if (node == goalNode) {
+                found = true;
+                break;
+            }
+            int nodeDistance = abstractDistance[node];
+            int edgeCount = abstractEdges(node, sourceCluster, goalCluster, direct);
+            for (int e = 0; e < edgeCount; e += 2) {
+                int next = edges[e];
+                int nextDistance = nodeDistance + edges[e + 1];
+                if (visited[next] == search && nextDistance >= abstractDistance[next])
+                    continue;
+                visit(next, nextDistance, node);
+                abstractOpen.pushOrDecrease(next,
+                        (long) (nextDistance + octile(nodeCells[next], goal)) << 32 | nextDistance);
+            }
+        }
+        if (!found)
+            return new PathResult(false, -1, List.of(), expanded);
+
+        // Refine each abstract step into tiles
+        ArrayList<Integer> abstractPath = new ArrayList<>();
+        for (int node = goalNode; node != -1; node = abstractParent[node])
+            abstractPath.add(nodeCells[node]);
+        Collections.reverse(abstractPath);
+        ArrayList<Coordinate> path = new ArrayList<>();
+        path.add(start);
+        int cost = 0;
+        for (int i = 1; i < abstractPath.size(); i++) {
+            int from = abstractPath.get(i - 1);
+            int to = abstractPath.get(i);
+            int cluster = clusterOf(from);
+            if (from == to)
+                continue;
+            if (cluster != clusterOf(to)) {
+                path.add(coordinateOf(to));
+                cost += octile(from, to);
+                continue;
+            }
+            expanded += searchCluster(cluster, from, to);
+            cost += localDistance[local(cluster, to)];
+            ArrayList<Coordinate> segment = new ArrayList<>();
+            for (int cell = to; cell != from; cell = localParent[local(cluster, cell)])
+                segment.add(coordinateOf(cell));
+            Collections.reverse(segment);
+            path.addAll(segment);
+        }
+        return new PathResult(true, cost, path, expanded);
+    }
+
+    /**
+     * Rebuilds the parts of the abstraction the edited tile can affect, if its walkability changed.
+     */
+    @Override
+    public void tileChanged(Map map, Coordinate tile, int previous, int current) {
+        if ((previous == Map.WALL) == (current == Map.WALL))
+            return;
+        int cx = tile.x() / clusterSize;
+        int cy = tile.y() / clusterSize;
+        int ox = tile.x() % clusterSize;
+        int oy = tile.y() % clusterSize;
+        boolean onEdge = ox == 0 || oy == 0 || ox == clusterSize - 1 || oy == clusterSize - 1;
+        if (!onEdge) {
+            buildCluster(cy * clustersX + cx);
+            return;
+        }
+        // Every border and corner of this cluster is owned by this cluster or a neighbor above or to the left
+        for (int ny = cy - 1; ny <= cy; ny++)
+            for (int nx = cx - 1; nx <= cx; nx++)
+                if (nx >= 0 && ny >= 0)
+                    buildBorders(ny * clustersX + nx);
+        for (int ny = cy - 1; ny <= cy + 1; ny++)
+            for (int nx = cx - 1; nx <= cx + 1; nx++)
+                if (nx >= 0 && ny >= 0 && nx < clustersX && ny < clustersY)
+                    buildCluster(ny * clustersX + nx);
+    }
+
+    /**
+     * Stops listening to the map.
+     */
+    public void close() {
+        map.removeListener(this);
+    }
+
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * @return Total number of nodes in the abstract graph
+     */
+    public int getNodeCount() {
+        int count = 0;
+        for (int[] nodes : clusterNodes)
+            count += nodes.length;
+        return count;
+    }
+
+    /**
+     * Recomputes the transitions on the right border, lower border and bottom-right corner of a cluster.
+     */
+    private void buildBorders(int cluster) {
+        int cx = cluster % clustersX;
+        int cy = cluster / clustersX;
+        int right = Math.min(width, (cx + 1) * clusterSize) - 1;
+        int bottom = Math.min(height, (cy + 1) * clusterSize) - 1;
+        int left = cx * clusterSize;
+        int top = cy * clusterSize;
+
+        rightBorders.set(cluster, right + 1 < width ? borderTransitions(right, top, bottom, true) : new ArrayList<>());
+        lowerBorders.set(cluster,
+                bottom + 1 < height ? borderTransitions(bottom, left, right, false) : new ArrayList<>());
+
+        ArrayList<int[]> main = new ArrayList<>();
+        ArrayList<int[]> anti = new ArrayList<>();
+        if (right + 1 < width && bottom + 1 < height) {
+            if (isOpen(right, bottom) && isOpen(right + 1, bottom + 1))
+                main.add(new int[]{bottom * width + right, (bottom + 1) * width + right + 1, 14});
+            if (isOpen(right + 1, bottom) && isOpen(right, bottom + 1))
+                anti.add(new int[]{bottom * width + right + 1, (bottom + 1) * width + right, 14});
+        }
+        mainCorners.set(cluster, main);
+        antiCorners.set(cluster, anti);
+    }
+
+    /**
+     * Finds the transitions across one straight border. Each maximal run of open, directly facing tile pairs is one
+     * entrance, crossed in its middle (or at both ends when wide). A diagonal crossing is only added when no facing
+     * pair next to it already connects the same two tiles.
+     * @param line the last column (vertical) or row (horizontal) before the border
+     * @param from first row (vertical) or column (horizontal) of the border
+     * @param to last row (vertical) or column (horizontal) of the border
+     */
+    private ArrayList<int[]> borderTransitions(int line, int from, int to, boolean vertical) {
+        ArrayList<int[]> found = new ArrayList<>();
+        int runStart = -1;
+        for (int i = from; i <= to + 1; i++) {
+            boolean facing = i <= to && isOpen(vertical, line, i) && isOpen(vertical, line + 1, i);
+            if (facing && runStart < 0)
+                runStart = i;
+            else if (!facing && runStart >= 0) {
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 >= WIDE_ENTRANCE) {
+                    found.add(facingPair(line, runStart, vertical));
+                    found.add(facingPair(line, runEnd, vertical));
+                }
+                else
+                    found.add(facingPair(line, (runStart + runEnd) / 2, vertical));
+                runStart = -1;
+            }
+        }
+        for (int i = from; i < to; i++) {
+            // Crossing from (line, i) to (line + 1, i + 1)
+            if (isOpen(vertical, line, i) && isOpen(vertical, line + 1, i + 1)
+                    && !isOpen(vertical, line, i + 1) && !isOpen(vertical, line + 1, i))
+                found.add(new int[]{cell(vertical, line, i), cell(vertical, line + 1, i + 1), 14});
+            // Crossing from (line, i + 1) to (line + 1, i)
+            if (isOpen(vertical, line, i + 1) && isOpen(vertical, line + 1, i)
+                    && !isOpen(vertical, line, i) && !isOpen(vertical, line + 1, i + 1))
+                found.add(new int[]{cell(vertical, line, i + 1), cell(vertical, line + 1, i), 14});
+        }
+        return found;
+    }
+
+    private int[] facingPair(int line, int i, boolean vertical) {
+        return new int[]{cell(vertical, line, i), cell(vertical, line + 1, i), 10};
+    }
+
+    /**
+     * Collects a cluster's nodes and the transitions leaving them from all its borders and corners, then computes
+     * the cheapest in-cluster route between every pair of nodes.
+     */
+    private void buildCluster(int cluster) {
+        int cx = cluster % clustersX;
+        int cy = cluster / clustersX;
+        ArrayList<ArrayList<int[]>> borders = new ArrayList<>();
+        for (int ny = cy - 1; ny <= cy; ny++)
+            for (int nx = cx - 1; nx <= cx; nx++) {
+                if (nx < 0 || ny < 0)
+                    continue;
+                int owner = ny * clustersX + nx;
+                borders.addAll(List.of(rightBorders.get(owner), lowerBorders.get(owner), mainCorners.get(owner),
+                        antiCorners.get(owner)));
+            }
+        HashSet<Integer> nodes = new HashSet<>();
+        for (ArrayList<int[]> border : borders)
+            for (int[] transition : border)
+                for (int end = 0; end < 2; end++)
+                    if (clusterOf(transition[end]) == cluster)
+                        nodes.add(transition[end]);
+        int[] nodeArray = nodes.stream().mapToInt(Integer::intValue).sorted().toArray();
+
+        // Count the transitions leaving each node, then fill them in behind the counts
+        int[] offsets = new int[nodeArray.length + 1];
+        for (ArrayList<int[]> border : borders)
+            for (int[] transition : border)
+                for (int end = 0; end < 2; end++)
+                    if (clusterOf(transition[end]) == cluster)
+                        offsets[Arrays.binarySearch(nodeArray, transition[end]) + 1] += 2;
+        for (int i = 0; i < nodeArray.length; i++)
+            offsets[i + 1] += offsets[i];
+        int[] crossings = new int[offsets[nodeArray.length]];
+        int[] filled = Arrays.copyOf(offsets, nodeArray.length);
+        for (ArrayList<int[]> border : borders)
+            for (int[] transition : border)
+                for (int end = 0; end < 2; end++)
+                    if (clusterOf(transition[end]) == cluster) {
+                        int i = Arrays.binarySearch(nodeArray, transition[end]);
+                        crossings[filled[i]++] = transition[1 - end];
+                        crossings[filled[i]++] = transition[2];
+                    }
+        transitionOffsets[cluster] = offsets;
+        transitionEdges[cluster] = crossings;
+        int[][] distances = new int[nodeArray.length][nodeArray.length];
+        for (int i = 0; i < nodeArray.length; i++) {
+            searchCluster(cluster, nodeArray[i], -1);
+            for (int j = 0; j < nodeArray.length; j++)
+                distances[i][j] = localDistance[local(cluster, nodeArray[j])];
+        }
+        clusterNodes[cluster] = nodeArray;
+        clusterDistances[cluster] = distances;
+        renumber = true;
+    }
+
+    /**
+     * Numbers the abstract nodes again if a cluster was rebuilt since the last query, growing the search workspace to
+     * hold them all plus the query's start and target.
+     */
+    private void numberNodes() {
+        if (!renumber)
+            return;
+        int count = 0;
+        for (int cluster = 0; cluster < clusterNodes.length; cluster++) {
+            nodeOffsets[cluster] = count;
+            count += clusterNodes[cluster].length;
+        }
+        nodeOffsets[clusterNodes.length] = count;
+        nodeCells = new int[count + 2];
+        for (int cluster = 0; cluster < clusterNodes.length; cluster++)
+            System.arraycopy(clusterNodes[cluster], 0, nodeCells, nodeOffsets[cluster], clusterNodes[cluster].length);
+        if (abstractDistance.length < count + 2) {
+            abstractDistance = new int[count + 2];
+            abstractParent = new int[count + 2];
+            // Stamps left from earlier numberings are all older than the next search, so they never match it
+            visited = Arrays.copyOf(visited, count + 2);
+        }
+        abstractOpen.ensureCapacity(count + 2);
+        renumber = false;
+    }
+
+    /**
+     * @return The number of an abstract node, or -1 if the tile is not one
+     */
+    private int nodeNumber(int cell) {
+        int cluster = clusterOf(cell);
+        int i = Arrays.binarySearch(clusterNodes[cluster], cell);
+        return i >= 0 ? nodeOffsets[cluster] + i : -1;
+    }
+
+    /**
+     * Copies the costs just found by searchCluster to each node of the cluster.
+     * @param links an array to reuse if it is long enough
+     */
+    private int[] linkCosts(int[] links, int cluster) {
+        int[] nodes = clusterNodes[cluster];
+        if (links.length < nodes.length)
+            links = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+            links[i] = localDistance[local(cluster, nodes[i])];
+        return links;
+    }
+
+    /**
+     * Fills edges with every abstract edge leaving the node as {next, cost} pairs: transitions, in-cluster routes to
+     * the other nodes of its cluster, and the links to the query's start and target.
+     * @param direct cost of the route from start to target inside their shared cluster, or INFINITY
+     * @return The number of ints filled, two per edge
+     */
+    private int abstractEdges(int node, int sourceCluster, int goalCluster, int direct) {
+        int count = 0;
+        int sourceNode = nodeCells.length - 2;
+        int goalNode = nodeCells.length - 1;
+        if (node == sourceNode) {
+            int[] nodes = clusterNodes[sourceCluster];
+            for (int j = 0; j < nodes.length; j++)
+                if (sourceLinks[j] < INFINITY)
+                    count = addEdge(count, nodeOffsets[sourceCluster] + j, sourceLinks[j]);
+            if (direct < INFINITY)
+                count = addEdge(count, goalNode, direct);
+            return count;
+        }
+        int cluster = clusterOf(nodeCells[node]);
+        int i = node - nodeOffsets[cluster];
+        int[] crossings = transitionEdges[cluster];
+        for (int e = transitionOffsets[cluster][i]; e < transitionOffsets[cluster][i + 1]; e += 2)
+            count = addEdge(count, nodeNumber(crossings[e]), crossings[e + 1]);
+        int[] distances = clusterDistances[cluster][i];
+        for (int j = 0; j < distances.length; j++)
+            if (j != i && distances[j] < INFINITY)
+                count = addEdge(count, nodeOffsets[cluster] + j, distances[j]);
+        if (cluster == goalCluster && goalLinks[i] < INFINITY)
+            count = addEdge(count, goalNode, goalLinks[i]);
+        return count;
+    }
+
+    private int addEdge(int count, int next, int cost) {
+        if (count + 2 > edges.length)
+            edges = Arrays.copyOf(edges, edges.length * 2);
+        edges[count] = next;
+        edges[count + 1] = cost;
+        return count + 2;
+    }
+
+    /**
+     * Dijkstra from source over the open tiles of one cluster, filling localDistance and localParent. Stops early
+     * once target is reached, or explores the whole cluster if target is -1.
+     * @return number of tiles expanded
+     */
+    private int searchCluster(int cluster, int source, int target) {
+        int left = (cluster % clustersX) * clusterSize;
+        int top = (cluster / clustersX) * clusterSize;
+        int right = Math.min(width, left + clusterSize);
+        int bottom = Math.min(height, top + clusterSize);
+        Arrays.fill(localDistance, INFINITY);
+        localOpen.clear();
+        localDistance[local(cluster, source)] = 0;
+        localOpen.push(local(cluster, source), 0);
+        int expanded = 0;
+        while (!localOpen.isEmpty()) {
+            int current = localOpen.pop();
+            expanded++;
+            int x = left + current % clusterSize;
+            int y = top + current / clusterSize;
+            if (y * width + x == target)
+                break;
+            for (int dir = 0; dir < 8; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                if (nx < left || ny < top || nx >= right || ny >= bottom || !isOpen(nx, ny))
+                    continue;
+                int next = (ny - top) * clusterSize + (nx - left);
+                int nextDistance = localDistance[current] + (DX[dir] != 0 && DY[dir] != 0 ? 14 : 10);
+                if (nextDistance < localDistance[next]) {
+                    localDistance[next] = nextDistance;
+                    localParent[next] = y * width + x;
+                    localOpen.pushOrDecrease(next, nextDistance);
+                }
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Records a tentative distance for an abstract node in the current query.
+     */
+    private void visit(int node, int distance, int parent) {
+        visited[node] = search;
+        abstractDistance[node] = distance;
+        abstractParent[node] = parent;
+    }
+
+    private int clusterOf(int cell) {
+        return (cell / width / clusterSize) * clustersX + (cell % width) / clusterSize;
+    }
+
+    /**
+     * @return The position of a map cell within its cluster's local workspace
+     */
+    private int local(int cluster, int cell) {
+        int x = cell % width - (cluster % clustersX) * clusterSize;
+        int y = cell / width - (cluster / clustersX) * clusterSize;
+        return y * clusterSize + x;
+    }
+
+    private int octile(int a, int b) {
+        int dx = Math.abs(a % width - b % width);
+        int dy = Math.abs(a / width - b / width);
+        return 10 * Math.max(dx, dy) + 4 * Math.min(dx, dy);
+    }
+
+    private Coordinate coordinateOf(int cell) {
+        return new Coordinate(cell % width, cell / width);
+    }
+
+    private int indexOf(Coordinate tile) {
+        return tile.y() * width + tile.x();
+    }
+
+    private boolean isOpen(int x, int y) {
+        return map.isInBounds(x, y) && !map.isWall(x, y);
+    }
+
+    /**
+     * isOpen in border coordinates: (line, i) is (column, row) for a vertical border and (row, column) otherwise.
+     */
+    private boolean isOpen(boolean vertical, int line, int i) {
+        return vertical ? isOpen(line, i) : isOpen(i, line);
+    }
+
+    private int cell(boolean vertical, int line, int i) {
+        return vertical ? i * width + line : line * width + i;
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of flat cell indices (y * width + x), ordered by a long key per cell. Each cell can be in the
+ * heap at most once, and its position is tracked so that its key can be lowered in place (decrease-key) rather than
+ * pushing a duplicate entry. All storage is primitive arrays, usually sized once for the whole grid.
+ */
+public class IndexedMinHeap {
+    private int[] heap;
+    private int[] position;
+    private long[] keys;
+    private int size;
+
+    /**
+     * Creates an empty heap able to hold every cell index in [0, capacity).
+     * @param capacity number of cells in the grid, usually width * height
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new long[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Grows the heap to hold every cell index in [0, capacity), keeping its contents. For searches that number their
+     * cells as they reach them instead of knowing the grid size up front.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= position.length)
+            return;
+        int oldCapacity = position.length;
+        heap = Arrays.copyOf(heap, capacity);
+        position = Arrays.copyOf(position, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        Arrays.fill(position, oldCapacity, capacity, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the cell is currently in the heap
+     */
+    public boolean contains(int cell) {
+        return position[cell] >= 0;
+    }
+
+    /**
+     * @return the key the cell was last pushed or decreased with. Only meaningful while the cell is in the heap.
+     */
+    public long getKey(int cell) {
+        return keys[cell];
+    }
+
+    /**
+     * Adds a cell that is not yet in the heap.
+     */
+    public void push(int cell, long key) {
+        keys[cell] = key;
+        heap[size] = cell;
+        position[cell] = size;
+        siftUp(size++);
+    }
+
+    /**
+     * Lowers the key of a cell already in the heap. Keys that are not lower than the current key are ignored.
+     */
+    public void decreaseKey(int cell, long key) {
+        if (key >= keys[cell])
+            return;
+        keys[cell] = key;
+        siftUp(position[cell]);
+    }
+
+    /**
+     * Pushes the cell if absent, otherwise lowers its key if the new key is lower.
+     */
+    public void pushOrDecrease(int cell, long key) {
+        if (contains(cell))
+            decreaseKey(cell, key);
+        else
+            push(cell, key);
+    }
+
+    /**
+     * Changes the key of a cell already in the heap, whether the new key is higher or lower.
+     */
+    public void update(int cell, long key) {
+        long old = keys[cell];
+        keys[cell] = key;
+        if (key < old)
+            siftUp(position[cell]);
+        else
+            siftDown(position[cell]);
+    }
+
+    /**
+     * Removes a cell from the heap if it is present.
+     */
+    public void remove(int cell) {
+        int i = position[cell];
+        if (i < 0)
+            return;
+        position[cell] = -1;
+        size--;
+        if (i == size)
+            return;
+        int last = heap[size];
+        heap[i] = last;
+        position[last] = i;
+        siftUp(i);
+        siftDown(position[last]);
+    }
+
+    /**
+     * @return the cell at position i of the heap's array, for visiting every cell in the heap in no particular order
+     * with i from 0 to size() - 1
+     */
+    public int cellAt(int i) {
+        return heap[i];
+    }
+
+    /**
+     * @return the cell with the lowest key, without removing it. The heap must not be empty.
+     */
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * @return the lowest key in the heap. The heap must not be empty.
+     */
+    public long peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Removes and returns the cell with the lowest key. The heap must not be empty.
+     */
+    public int pop() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes every cell from the heap. Runs in time proportional to the current size, not the capacity.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            position[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int cell = heap[i];
+        long key = keys[cell];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int parentCell = heap[parent];
+            if (keys[parentCell] <= key)
+                break;
+            heap[i] = parentCell;
+            position[parentCell] = i;
+            i = parent;
+        }
+        heap[i] = cell;
+        position[cell] = i;
+    }
+
+    private void siftDown(int i) {
+        int cell = heap[i];
+        long key = keys[cell];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int childCell = heap[child];
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[childCell]) {
+                child = right;
+                childCell = heap[right];
+            }
+            if (key <= keys[childCell])
+                break;
+            heap[i] = childCell;
+            position[childCell] = i;
+            i = child;
+        }
+        heap[i] = cell;
+        position[cell] = i;
+    }
+}
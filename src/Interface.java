@@ -1,15 +1,36 @@
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.util.List;
 
 public class Interface {
     protected static String cursorType = "highlight";
     protected static String menuType = "editor";
-    protected static String[] menuOptions = {"editor", "algorithms", "load/save [Future]", "ai pathfinder [Future]"};
-    protected static String[] algorithmSpeedOptions = {"10ms", "100ms", "500ms", "1000ms"};
+    protected static String[] menuOptions = {"editor", "algorithms", "load/save", "ai pathfinder [Future]"};
+    protected static String[] algorithmSpeedOptions = {"unthrottled", "10ms", "100ms", "500ms", "1000ms"};
+    protected static String[] stepsPerFrameOptions = {"1 step", "10 steps", "100 steps", "1000 steps", "10000 steps"};
+    /**
+     * Delay between frames at the "unthrottled" speed, about the refresh rate of a display
+     */
+    private static final int FRAME_MILLIS = 16;
+    /**
+     * Longest the event thread spends drawing queued steps in one frame, so the window stays responsive when the
+     * search runs faster than it can be drawn
+     */
+    private static final long DRAW_BUDGET_NANOS = 10_000_000;
+    /**
+     * Width and height in tiles of the clusters of the HierarchicalPathFinder built for the map on display
+     */
+    private static final int CLUSTER_SIZE = 16;
+    protected static String tieBreaking = "high g";
 
     private static Timer timer;
-    private static Coordinate lastPathShown;
+    private static SearchWorker worker;
+    private static SearchContext search;
+    private static int lastPathShown;
+    // Built by the first Hierarchical search on a map, then kept up to date with its edits
+    private static HierarchicalPathFinder hierarchical;
 
     /**
      * Called when a JButton in the colorMap is clicked. Based on the current cursorType, this updates
@@ -21,10 +42,7 @@ public class Interface {
             return;
         Coordinate additionalToUpdate = null;
         // Use the map and Coordinate to find the tileType at that tile
-        String tileType = "";
-        for (String key : Map.legend.keySet())
-            if (Map.legend.get(key).equals(map.getMap()[tile.y()][tile.x()]))
-                tileType = key;
+        String tileType = Map.tileNames[map.getTile(tile)];
 
         // Cursor Mode: toggles tile from empty to highlight and back. Ignore other tiles.
         if (cursorType.equals("highlight")) {
@@ -69,62 +87,199 @@ public class Interface {
      * @param display Display in which to show the process, which also controls the speed.
      */
     public static void breadthFirstSearch(Map map, Display display) {
+        runAlgorithm(map, display, "Breadth-First");
+    }
+
+    /**
+     * Runs the named algorithm on a SearchWorker thread, showing its steps on the display. Every frame, the worker is
+     * allowed the selected number of steps per frame, and the steps it has published since the last frame are drawn.
+     * At the "unthrottled" speed the worker runs freely and frames are drawn at about the display's refresh rate.
+     * Once the search is done, the route is drawn the same number of tiles per frame. A Hierarchical search cannot be
+     * stepped, so it runs at once and only its route is drawn.
+     * @param algorithm one of the names in Algorithms.algorithmOptions
+     */
+    public static void runAlgorithm(Map map, Display display, String algorithm) {
+        // Stop any search that is still being shown
+        stopAlgorithm();
         // Reset the colorMap and clear highlighted squares
         display.updateColorMap();
         display.clearHighlighted();
 
-        Algorithms.setupBreadthFirstSearch(map);
-        lastPathShown = map.getTargetCoord();
-        // The timer acts as the loop, performing one time-step each loop, then delaying for the selected time
-        // as controlled by the user via the Display's algorithm timer.
+        if (algorithm.equals("Hierarchical")) {
+            runHierarchical(map, display);
+            return;
+        }
+        search = new PathFinder(map, tieBreaking).newSearch(map.getStartCoord(), map.getTargetCoord(), algorithm);
+        worker = new SearchWorker(search);
+        SearchWorker current = worker;
+        // The timer acts as the frame loop, delaying for the time selected on the Display's algorithm menu
         timer = new Timer(getAlgorithmTimer(display), e -> {
-            if (Algorithms.done) {
-                // Increment the shown path until complete
-                lastPathShown = showFinalRoute(lastPathShown, display);
-                if(lastPathShown.equals(map.getStartCoord()))
-                    timer.stop();
+            boolean finished = current.isFinished();
+            boolean allDrawn = showSearch(current, map, display);
+            if (!finished || !allDrawn) {
+                if (isUnthrottled(display))
+                    current.unthrottle();
+                else
+                    current.allow(getStepsPerFrame(display));
+                timer.setDelay(getAlgorithmTimer(display));
             }
             else {
-                Algorithms.stepBreadthFirstSearch(map);
-                showSearch(display);
-                timer.setDelay(getAlgorithmTimer(display));
+                timer.stop();
+                display.showStats(search.getMetrics());
+                if (search.routeExists())
+                    showRoute(search.getResult().path(), display);
             }
         });
         timer.setInitialDelay(0);
+        worker.start();
         timer.start();
     }
 
     /**
-     * Uses the stored data in Algorithms to efficiently update the display based on the past algorithm step
+     * Finds the route between the map's start and target tiles on a HierarchicalPathFinder, building one for the map
+     * if the last was built for another, and draws it.
+     */
+    private static void runHierarchical(Map map, Display display) {
+        if (hierarchical == null || hierarchical.getMap() != map) {
+            closeHierarchical();
+            hierarchical = new HierarchicalPathFinder(map, CLUSTER_SIZE);
+        }
+        long begin = System.nanoTime();
+        PathResult result = new PathFinder(map, tieBreaking, null, null, hierarchical).findPath("Hierarchical");
+        long nanos = System.nanoTime() - begin;
+        display.showStats(new SearchMetrics("Hierarchical", result.routeExists(), result.nodesExpanded(), 0, 0, 0,
+                result.path().size(), result.cost(), nanos));
+        if (result.routeExists())
+            showRoute(result.path(), display);
+    }
+
+    /**
+     * Stops the HierarchicalPathFinder, if any, from listening to its map.
+     */
+    private static void closeHierarchical() {
+        if (hierarchical != null)
+            hierarchical.close();
+        hierarchical = null;
+    }
+
+    /**
+     * Draws a route backwards from the target, the selected number of tiles per frame.
+     * @param route every tile of the route in order, from start to target inclusive
+     */
+    private static void showRoute(List<Coordinate> route, Display display) {
+        lastPathShown = route.size() - 1;
+        timer = new Timer(getAlgorithmTimer(display), e -> {
+            // Increment the shown path until complete
+            for (int i = 0; i < getStepsPerFrame(display) && lastPathShown > 0; i++)
+                lastPathShown = showFinalRoute(route, lastPathShown, display);
+            if (lastPathShown == 0)
+                timer.stop();
+        });
+        timer.setInitialDelay(0);
+        timer.start();
+    }
+
+    /**
+     * Stops the search being shown, if any. The display keeps whatever has been drawn so far.
+     */
+    public static void stopAlgorithm() {
+        if (timer != null)
+            timer.stop();
+        if (worker != null)
+            worker.cancel();
+    }
+
+    /**
+     * Draws the steps the worker has published since the last frame, for at most DRAW_BUDGET_NANOS.
      * @param display Display on which to show the search
+     * @return true if every published step has been drawn
      */
-    public static void showSearch(Display display) {
-        display.showSearch(Algorithms.lastSearched, "searched");
-        for(Coordinate frontier : Algorithms.newFrontier)
-            display.showSearch(frontier, "frontier");
+    public static boolean showSearch(SearchWorker worker, Map map, Display display) {
+        long deadline = System.nanoTime() + DRAW_BUDGET_NANOS;
+        SearchWorker.StepBatch batch;
+        while (System.nanoTime() < deadline && (batch = worker.poll()) != null)
+            for (int i = 0; i < batch.size(); i++) {
+                int tile = batch.getTile(i);
+                Coordinate coordinate = new Coordinate(tile % map.getWidth(), tile / map.getWidth());
+                display.showSearch(coordinate, SearchWorker.kindNames[batch.getKind(i)]);
+            }
+        return System.nanoTime() < deadline;
     }
 
     /**
      * @return the int representing milliseconds of the selected option on the Algorithm menu of the Display
      */
     private static int getAlgorithmTimer(Display display){
+        if (isUnthrottled(display))
+            return FRAME_MILLIS;
         String delayString = "" + display.algorithmSpeed.getSelectedItem();
         delayString = delayString.substring(0, delayString.length() - 2);
         return Integer.parseInt(delayString);
     }
 
+    private static boolean isUnthrottled(Display display) {
+        return "unthrottled".equals(display.algorithmSpeed.getSelectedItem());
+    }
+
+    /**
+     * @return the number of steps per frame selected on the Algorithm menu of the Display
+     */
+    private static int getStepsPerFrame(Display display) {
+        String steps = "" + display.stepsPerFrame.getSelectedItem();
+        return Integer.parseInt(steps.substring(0, steps.indexOf(' ')));
+    }
+
     /**
-     * Shows the next step of the path (backwards) in the route found by Algorithms. Once it reaches the
-     * start tile, it should not be called again.
-     * @param lastShown Coordinate holding the location of the last tile shown (the output of this function's previous call)
+     * Shows the next step of the path (backwards) in a route found by any algorithm. Once it reaches the start tile,
+     * it should not be called again.
+     * @param route every tile of the route in order, from start to target inclusive
+     * @param lastShown index into route of the last tile shown (the output of this function's previous call), starting
+     *                  from the target
      * @param display The Display on which to show the path
-     * @return The tile that was just displayed.
+     * @return The index of the tile that was just displayed.
      */
-    public static Coordinate showFinalRoute(Coordinate lastShown, Display display){
-        String dirName = Algorithms.directions[lastShown.y()][lastShown.x()];
-        int[] direction = Algorithms.dirCodes.get(dirName);
-        Coordinate nextInPath = new Coordinate(lastShown.x() + direction[0], lastShown.y() + direction[1]);
-        display.showSearch(nextInPath, "path");
+    public static int showFinalRoute(List<Coordinate> route, int lastShown, Display display){
+        int nextInPath = lastShown - 1;
+        display.showSearch(route.get(nextInPath), "path");
         return nextInPath;
     }
+
+    /**
+     * Asks the user for a file and saves the map to it in the MapFile format. Errors are reported in a dialog.
+     * @param frame the window the file chooser belongs to
+     */
+    public static void saveMap(Map map, JFrame frame) {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION)
+            return;
+        try {
+            MapFile.save(map, chooser.getSelectedFile().toPath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Could not save map: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Asks the user for a saved map file and opens it in a new Display, replacing the given window. Errors are
+     * reported in a dialog and leave the current window open.
+     * @param frame the window to replace
+     */
+    public static void loadMap(JFrame frame) {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION)
+            return;
+        Map loaded;
+        try {
+            loaded = MapFile.load(chooser.getSelectedFile().toPath());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(frame, "Could not load map: " + e.getMessage());
+            return;
+        }
+        stopAlgorithm();
+        closeHierarchical();
+        // The new Display opens on the editor menu
+        menuType = "editor";
+        new Display(loaded);
+        frame.dispose();
+    }
 }
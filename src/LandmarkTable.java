@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Precomputed distances from a few landmark tiles to every tile of a Map, giving A* a far better informed heuristic
+ * than the octile distance on mazes and buildings (the ALT heuristic: A*, landmarks and the triangle inequality). For
+ * any landmark L, the cheapest route between a and b costs at least |d(L, b) - d(L, a)|, and the estimate is the
+ * largest of these bounds over all landmarks, or the octile distance if that is larger still.
+ *
+ * Landmarks are chosen by farthest-point selection: each new landmark is the open tile furthest from every landmark
+ * already chosen, which spreads them around the edges of the map where they bound the most routes. Distances are kept
+ * in one int array, with the distances of each tile to all landmarks next to each other so one estimate reads two
+ * short runs of memory.
+ *
+ * The table listens to its Map. An edit that changes whether a tile is a wall only marks the table stale; the
+ * distances are recomputed when the next search starts (through prepare), so a burst of edits costs one refresh and
+ * no search ever sees the distances change under it. Refreshing holds the table's lock, so searches starting on
+ * several threads at once refresh it only once. As for every search, the Map must not be edited while one runs.
+ */
+public class LandmarkTable implements Heuristic, MapListener {
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] STEP_COST = {10, 14, 10, 14, 10, 14, 10, 14};
+    private static final int MAGIC = 0x4D4C4650; // "PFLM" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    /**
+     * Number of ints written to the file per write call when saving.
+     */
+    private static final int WRITE_CHUNK = 8192;
+
+    private final Map map;
+    private final int width;
+    private final int height;
+    private final int count;
+    private final int[] landmarks;
+    // Distance between tile c and landmark k at [c * count + k], INFINITY where the landmark cannot reach the tile
+    private final int[] distances;
+    // Guarded by this table's lock
+    private boolean stale;
+
+    /**
+     * Chooses the landmarks, computes their distances and starts listening to the map. Call close() to stop
+     * listening.
+     * @param count number of landmarks; each adds 4 bytes per tile
+     */
+    public LandmarkTable(Map map, int count) {
+        if (count < 1)
+            throw new IllegalArgumentException("At least one landmark is needed");
+        this.map = map;
+        this.count = count;
+        width = map.getWidth();
+        height = map.getHeight();
+        landmarks = new int[count];
+        distances = new int[width * height * count];
+        computeLandmarks();
+        map.addListener(this);
+    }
+
+    private LandmarkTable(Map map, int[] landmarks, int[] distances) {
+        this.map = map;
+        this.count = landmarks.length;
+        width = map.getWidth();
+        height = map.getHeight();
+        this.landmarks = landmarks;
+        this.distances = distances;
+        map.addListener(this);
+    }
+
+    /**
+     * @return The triangle-inequality lower bound between two tiles, and never less than their octile distance
+     */
+    @Override
+    public int estimate(int from, int to) {
+        int dx = Math.abs(from % width - to % width);
+        int dy = Math.abs(from / width - to / width);
+        int best = 10 * Math.max(dx, dy) + 4 * Math.min(dx, dy);
+        int a = from * count;
+        int b = to * count;
+        for (int k = 0; k < count; k++) {
+            int da = distances[a + k];
+            int db = distances[b + k];
+            // A landmark that cannot reach both tiles says nothing about the route between them
+            if (da == INFINITY || db == INFINITY)
+                continue;
+            best = Math.max(best, Math.abs(db - da));
+        }
+        return best;
+    }
+
+    /**
+     * Refreshes the table before a search starts.
+     */
+    @Override
+    public void prepare() {
+        refresh();
+    }
+
+    /**
+     * Chooses the landmarks again and recomputes their distances, if the Map's walls have changed since they were
+     * last computed.
+     */
+    public synchronized void refresh() {
+        if (!stale)
+            return;
+        stale = false;
+        computeLandmarks();
+    }
+
+    /**
+     * @return The landmark tiles, in the order they were chosen
+     */
+    public Coordinate[] getLandmarks() {
+        Coordinate[] tiles = new Coordinate[count];
+        for (int k = 0; k < count; k++)
+            tiles[k] = new Coordinate(landmarks[k] % width, landmarks[k] / width);
+        return tiles;
+    }
+
+    /**
+     * Marks the table stale if the tile's walkability changed.
+     */
+    @Override
+    public synchronized void tileChanged(Map map, Coordinate tile, int previous, int current) {
+        if ((previous == Map.WALL) != (current == Map.WALL))
+            stale = true;
+    }
+
+    /**
+     * Stops listening to the map.
+     */
+    public void close() {
+        map.removeListener(this);
+    }
+
+    /**
+     * Writes the landmarks and distances to a file, replacing it if it exists, so they need not be computed again
+     * for the same walls. All values are little-endian:
+     * <pre>
+     *   offset  size  field
+     *   0       4     magic "PFLM"
+     *   4       4     format version (currently 1)
+     *   8       4     width
+     *   12      4     height
+     *   16      4     landmark count
+     *   20      4     reserved, zero
+     *   24      8     CRC-32 of the wall layer, to detect a different map
+     *   32      ...   landmark count ints: the landmark tiles as flat indices
+     *   ...     ...   width * height * count ints: the distances, tile by tile
+     * </pre>
+     */
+    public void save(Path file) throws IOException {
+        refresh();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(count).putInt(0);
+            header.putLong(wallChecksum(map));
+            header.flip();
+            writeFully(channel, header);
+            writeInts(channel, landmarks);
+            writeInts(channel, distances);
+        }
+    }
+
+    /**
+     * Reads a table saved by save() and starts listening to the map.
+     * @throws IOException if the file cannot be read, is not a landmark file this version understands, or was saved
+     * for a map with different walls
+     */
+    public static LandmarkTable load(Map map, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a landmark file, bad magic number: " + file);
+            int version = header.getInt(4);
+            if (version != VERSION)
+                throw new IOException("Unsupported landmark file version " + version + ": " + file);
+            int count = header.getInt(16);
+            if (header.getInt(8) != map.getWidth() || header.getInt(12) != map.getHeight()
+                    || header.getLong(24) != wallChecksum(map))
+                throw new IOException("Landmarks were computed for a different map: " + file);
+            if (count < 1 || (long) map.getWidth() * map.getHeight() * count > Integer.MAX_VALUE)
+                throw new IOException("Invalid landmark count " + count + ": " + file);
+            int[] landmarks = readInts(channel, count, file);
+            int[] distances = readInts(channel, map.getWidth() * map.getHeight() * count, file);
+            return new LandmarkTable(map, landmarks, distances);
+        }
+    }
+
+    /**
+     * Farthest-point selection. The first landmark is the tile furthest from an arbitrary open tile; each later one
+     * is the reachable tile whose distance to its nearest landmark is largest. Every landmark's distances are
+     * written into the table as it is chosen.
+     */
+    private void computeLandmarks() {
+        int tiles = width * height;
+        int[] distance = new int[tiles];
+        int[] nearest = new int[tiles];
+        Arrays.fill(nearest, INFINITY);
+        IndexedMinHeap open = new IndexedMinHeap(tiles);
+
+        int seed = 0;
+        while (seed < tiles && map.isWall(seed))
+            seed++;
+        if (seed == tiles) {
+            // Nothing but walls: every landmark is useless, and estimates fall back to the octile distance
+            Arrays.fill(landmarks, 0);
+            Arrays.fill(distances, INFINITY);
+            return;
+        }
+        dijkstra(seed, distance, open);
+        int next = farthest(distance);
+        for (int k = 0; k < count; k++) {
+            landmarks[k] = next;
+            dijkstra(next, distance, open);
+            for (int cell = 0; cell < tiles; cell++) {
+                distances[cell * count + k] = distance[cell];
+                nearest[cell] = Math.min(nearest[cell], distance[cell]);
+            }
+            next = farthest(nearest);
+        }
+    }
+
+    /**
+     * @return The tile with the largest finite distance
+     */
+    private static int farthest(int[] distance) {
+        int best = 0;
+        int bestDistance = -1;
+        for (int cell = 0; cell < distance.length; cell++)
+            if (distance[cell] != INFINITY && distance[cell] > bestDistance) {
+                best = cell;
+                bestDistance = distance[cell];
+            }
+        return best;
+    }
+
+    /**
+     * Fills distance with the cost of the cheapest route from the source to every tile, using the same moves and
+     * costs as SearchContext. Routes cost the same in both directions, so these are also the distances to the source.
+     */
+    private void dijkstra(int source, int[] distance, IndexedMinHeap open) {
+        Arrays.fill(distance, INFINITY);
+        distance[source] = 0;
+        open.push(source, 0);
+        while (!open.isEmpty()) {
+            int current = open.pop();
+            int x = current % width;
+            int y = current / width;
+            for (int dir = 0; dir < 8; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height)
+                    continue;
+                int next = ny * width + nx;
+                int candidate = distance[current] + STEP_COST[dir];
+                if (candidate < distance[next] && !map.isWall(next)) {
+                    distance[next] = candidate;
+                    open.pushOrDecrease(next, candidate);
+                }
+            }
+        }
+    }
+
+    private static long wallChecksum(Map map) {
+        CRC32 crc = new CRC32();
+        ByteBuffer word = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        LongBuffer walls = map.getWallBits();
+        for (int i = 0; i < Map.wordCount(map.getWidth(), map.getHeight()); i++) {
+            word.clear();
+            word.putLong(walls.get(i));
+            word.flip();
+            crc.update(word);
+        }
+        return crc.getValue();
+    }
+
+    private static void writeInts(FileChannel channel, int[] values) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < values.length; i += WRITE_CHUNK) {
+            chunk.clear();
+            chunk.asIntBuffer().put(values, i, Math.min(WRITE_CHUNK, values.length - i));
+            chunk.limit(Math.min(WRITE_CHUNK, values.length - i) * Integer.BYTES);
+            writeFully(channel, chunk);
+        }
+    }
+
+    private static int[] readInts(FileChannel channel, int length, Path file) throws IOException {
+        int[] values = new int[length];
+        ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < length; i += WRITE_CHUNK) {
+            int n = Math.min(WRITE_CHUNK, length - i);
+            chunk.clear().limit(n * Integer.BYTES);
+            while (chunk.hasRemaining())
+                if (channel.read(chunk) < 0)
+                    throw new IOException("Landmark file is truncated: " + file);
+            chunk.flip();
+            IntBuffer ints = chunk.asIntBuffer();
+            ints.get(values, i, n);
+        }
+        return values;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                throw new IOException("Unexpected end of file");
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -1,7 +1,18 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Main {
-    public static void main(String[] args) {
+    /**
+     * Opens the map editor on an example map. With --serve as the first argument, starts a headless PathServer
+     * instead, passing it the remaining arguments.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--serve")) {
+            PathServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // Set initial values
         int mapWidth = 10;
         int mapHeight = 9;
@@ -1,28 +1,50 @@
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class holds and manipulates information about a two-dimensional array of tiles.
  * All information is mutable, but the original width and height cannot be changed. Accessors make it straightforward
  * to transfer information into a new Map object of different dimensions.
+ *
+ * Tiles are stored compactly: walls and highlights are each one bit per tile in a bitset of longs indexed by
+ * y * width + x, and the start and target are stored only as Coordinates. The highlight layer is only allocated
+ * once a tile is first highlighted. The wall layer is a LongBuffer so that it can live either on the heap or directly
+ * in a memory-mapped map file (see MapFile). A read-only wall layer is copied onto the heap the first time a tile
+ * changes.
  */
 
-public class Map {
+public class Map implements Grid {
+    public static final int START = 0;
+    public static final int TARGET = 1;
+    public static final int EMPTY = 2;
+    public static final int HIGHLIGHT = 3;
+    public static final int WALL = 4;
+
     protected static final HashMap<String, Integer> legend = new HashMap<>(){{
-        put("start", 0);
-        put("target", 1);
-        put("empty", 2);
-        put("highlight", 3);
-        put("wall", 4);
+        put("start", START);
+        put("target", TARGET);
+        put("empty", EMPTY);
+        put("highlight", HIGHLIGHT);
+        put("wall", WALL);
     }};
+    /**
+     * The reverse of legend: the tile type name for each tile code.
+     */
+    protected static final String[] tileNames = {"start", "target", "empty", "highlight", "wall"};
 
     private final int width;
     private final int height;
 
-    private final int[][] map;
+    private LongBuffer walls;
+    private long[] highlights;
     private Coordinate startCoord;
     private Coordinate targetCoord;
 
+    private long version;
+    private final CopyOnWriteArrayList<MapListener> listeners = new CopyOnWriteArrayList<>();
+
     /**
      * Constructs a Map object from the provided information
      * @param w width of the map
@@ -32,9 +54,11 @@ public class Map {
      * @param targetCoord Coordinate of the target location
      */
     Map(int w, int h, ArrayList<Coordinate> walls, Coordinate startCoord, Coordinate targetCoord) {
+        if ((long) w * h > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Map has more tiles than can be indexed: " + w + "x" + h);
         width = w;
         height = h;
-        map = new int[h][w];
+        this.walls = LongBuffer.wrap(new long[wordCount(w, h)]);
         if(isInBounds(startCoord))
             this.startCoord = startCoord;
         else
@@ -44,29 +68,66 @@ public class Map {
         else
             this.targetCoord = new Coordinate(4, 4);
 
-        //Initiate map values
-        for(int i = 0; i < h; i++) {
-            for(int j = 0; j < w; j++) {
-                map[i][j] = Map.legend.get("empty");
-            }
-        }
-        map[startCoord.y()][startCoord.x()] = Map.legend.get("start");
-        map[targetCoord.y()][targetCoord.x()] = Map.legend.get("target");
-
         for(Coordinate wall : walls) {
             if(isInBounds(wall))
                 setWall(wall);
         }
     }
 
+    /**
+     * Constructs a Map directly on top of an existing wall bitset, without copying it. Used by MapFile to search a
+     * memory-mapped file in place. If the bitset is read-only, it is copied the first time a tile changes.
+     * @param walls one bit per tile, indexed by y * width + x, holding at least (w * h + 63) / 64 longs
+     */
+    Map(int w, int h, LongBuffer walls, Coordinate startCoord, Coordinate targetCoord) {
+        if ((long) w * h > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Map has more tiles than can be indexed: " + w + "x" + h);
+        if (walls.capacity() < wordCount(w, h))
+            throw new IllegalArgumentException("Wall layer is too small for a " + w + "x" + h + " map");
+        width = w;
+        height = h;
+        this.walls = walls;
+        this.startCoord = startCoord;
+        this.targetCoord = targetCoord;
+    }
+
+    /**
+     * Constructs an independent copy of another Map, including its highlighted tiles and version, but not its
+     * listeners. The copy's walls are always held on the heap, even if the original's are memory-mapped.
+     */
+    private Map(Map other) {
+        width = other.width;
+        height = other.height;
+        long[] wallCopy = new long[wordCount(width, height)];
+        other.walls.get(0, wallCopy);
+        walls = LongBuffer.wrap(wallCopy);
+        if (other.highlights != null)
+            highlights = other.highlights.clone();
+        startCoord = other.startCoord;
+        targetCoord = other.targetCoord;
+        version = other.version;
+    }
+
+    /**
+     * Searches only read from a Map, so a Map can be shared between threads as long as no one edits it. When the
+     * original must stay editable, searches can run on a copy instead.
+     * @return An independent copy of this Map
+     */
+    public Map copy() {
+        return new Map(this);
+    }
+
     /**
      * Replace the current startCoord with an empty tile, before adding the new startCoord to the map.
      * The Coordinate must be within the bounds of the Map.
      */
     public void setStartCoord(Coordinate startCoord) {
-        map[this.startCoord.y()][this.startCoord.x()] = Map.legend.get("empty");
+        Coordinate oldStart = this.startCoord;
+        int previous = getTile(startCoord);
+        clearTile(indexOf(startCoord));
         this.startCoord = startCoord;
-        map[startCoord.y()][startCoord.x()] = Map.legend.get("start");
+        tileChanged(oldStart, START, getTile(oldStart));
+        tileChanged(startCoord, previous, START);
     }
 
     /**
@@ -74,9 +135,12 @@ public class Map {
      * The Coordinate must be within the bounds of the Map.
      */
     public void setTargetCoord(Coordinate targetCoord) {
-        map[this.targetCoord.y()][this.targetCoord.x()] = Map.legend.get("empty");
+        Coordinate oldTarget = this.targetCoord;
+        int previous = getTile(targetCoord);
+        clearTile(indexOf(targetCoord));
         this.targetCoord = targetCoord;
-        map[targetCoord.y()][targetCoord.x()] = Map.legend.get("target");
+        tileChanged(oldTarget, TARGET, getTile(oldTarget));
+        tileChanged(targetCoord, previous, TARGET);
     }
 
     /**
@@ -84,8 +148,11 @@ public class Map {
      * The Coordinate must be within the bounds of the Map.
      */
     public void setEmpty(Coordinate empty){
-        if(!new ArrayList<Integer>(){{add(legend.get("start")); add(legend.get("target"));}}.contains(map[empty.y()][empty.x()]))
-            map[empty.y()][empty.x()] = Map.legend.get("empty");
+        if(!isStartOrTarget(empty)) {
+            int previous = getTile(empty);
+            clearTile(indexOf(empty));
+            tileChanged(empty, previous, EMPTY);
+        }
     }
 
     /**
@@ -93,8 +160,13 @@ public class Map {
      * The Coordinate must be within the bounds of the Map.
      */
     public void setHighlight(Coordinate highlight){
-        if(map[highlight.y()][highlight.x()] == Map.legend.get("empty"))
-            map[highlight.y()][highlight.x()] = Map.legend.get("highlight");
+        if(getTile(highlight) == EMPTY) {
+            if (highlights == null)
+                highlights = new long[wordCount(width, height)];
+            int index = indexOf(highlight);
+            highlights[index >>> 6] |= 1L << index;
+            tileChanged(highlight, EMPTY, HIGHLIGHT);
+        }
     }
 
     /**
@@ -102,8 +174,33 @@ public class Map {
      * The Coordinate must be within the bounds of the Map.
      */
     public void setWall(Coordinate wall){
-        if(!new ArrayList<Integer>(){{add(legend.get("start")); add(legend.get("target"));}}.contains(map[wall.y()][wall.x()]))
-            map[wall.y()][wall.x()] = Map.legend.get("wall");
+        if(!isStartOrTarget(wall)) {
+            int previous = getTile(wall);
+            int index = indexOf(wall);
+            clearTile(index);
+            writableWalls().put(index >>> 6, walls.get(index >>> 6) | (1L << index));
+            tileChanged(wall, previous, WALL);
+        }
+    }
+
+    /**
+     * Registers a listener to be told about every change to this Map's tiles. Listeners are called on the thread
+     * that made the change, in the order they were added.
+     */
+    public void addListener(MapListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MapListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return A counter that increases every time any tile changes. Two equal versions of the same Map have
+     * identical tiles.
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -111,17 +208,64 @@ public class Map {
      * The Coordinate must be within the bounds of the Map.
      */
     public boolean isWall(Coordinate tile){
-        return map[tile.y()][tile.x()] == Map.legend.get("wall");
+        return isWall(indexOf(tile));
+    }
+
+    /**
+     * Returns the boolean representing whether the tile at (x, y) is a wall tile. The tile must be within the bounds
+     * of the Map.
+     */
+    public boolean isWall(int x, int y) {
+        return isWall(y * width + x);
+    }
+
+    /**
+     * Returns the boolean representing whether the tile at the flat index y * width + x is a wall tile.
+     */
+    public boolean isWall(int index) {
+        return (walls.get(index >>> 6) & (1L << index)) != 0;
     }
 
     /**
      * Returns the boolean representing whether the given Coordinate is within the Map's bounds.
      */
     public boolean isInBounds(Coordinate tile) {
-        return (tile.x() >= 0 && tile.y() >= 0 && tile.x() < width && tile.y() < height);
+        return isInBounds(tile.x(), tile.y());
+    }
+
+    /**
+     * Returns the boolean representing whether (x, y) is within the Map's bounds.
+     */
+    public boolean isInBounds(int x, int y) {
+        return (x >= 0 && y >= 0 && x < width && y < height);
+    }
+
+    /**
+     * Returns the type of the given tile as one of the codes in legend. The Coordinate must be within the bounds of
+     * the Map.
+     */
+    public int getTile(Coordinate tile) {
+        if (tile.equals(startCoord))
+            return START;
+        if (tile.equals(targetCoord))
+            return TARGET;
+        int index = indexOf(tile);
+        if (isWall(index))
+            return WALL;
+        if (highlights != null && (highlights[index >>> 6] & (1L << index)) != 0)
+            return HIGHLIGHT;
+        return EMPTY;
     }
 
+    /**
+     * Builds a full grid of tile codes, indexed [row][column]. This allocates a new int per tile, so prefer getTile
+     * for anything but small maps.
+     */
     public int[][] getMap(){
+        int[][] map = new int[height][width];
+        for(int row=0; row<height; row++)
+            for(int col=0; col<width; col++)
+                map[row][col] = getTile(new Coordinate(col, row));
         return map;
     }
 
@@ -133,13 +277,21 @@ public class Map {
         ArrayList<Coordinate> walls = new ArrayList<>();
         for(int row=0; row<height; row++){
             for(int col=0; col<width; col++){
-                if (map[row][col] == legend.get("wall"))
+                if (isWall(col, row))
                     walls.add(new Coordinate(col, row));
             }
         }
         return walls;
     }
 
+    /**
+     * @return A read-only view of the wall bitset: one bit per tile, indexed by y * width + x, with the lowest bit of
+     * each long holding the lowest index. Lets the walls be written out without building a list of Coordinates.
+     */
+    public LongBuffer getWallBits() {
+        return walls.asReadOnlyBuffer();
+    }
+
     public Coordinate getStartCoord() {
         return startCoord;
     }
@@ -161,11 +313,59 @@ public class Map {
         for(int i=0; i<height; i++){
             s.append("[");
             for(int j=0; j<width; j++){
-                s.append(map[i][j]);
+                s.append(getTile(new Coordinate(j, i)));
                 s.append(", ");
             }
             s = new StringBuilder(s.substring(0, s.length() - 2) + "]\n");
         }
         return s.toString();
     }
+
+    private int indexOf(Coordinate tile) {
+        return tile.y() * width + tile.x();
+    }
+
+    /**
+     * Bumps the version and notifies listeners, if the tile actually changed.
+     */
+    private void tileChanged(Coordinate tile, int previous, int current) {
+        if (previous == current)
+            return;
+        version++;
+        for (MapListener listener : listeners)
+            listener.tileChanged(this, tile, previous, current);
+    }
+
+    private boolean isStartOrTarget(Coordinate tile) {
+        return tile.equals(startCoord) || tile.equals(targetCoord);
+    }
+
+    /**
+     * Removes any wall or highlight from the tile at the given index.
+     */
+    private void clearTile(int index) {
+        if ((walls.get(index >>> 6) & (1L << index)) != 0)
+            writableWalls().put(index >>> 6, walls.get(index >>> 6) & ~(1L << index));
+        if (highlights != null)
+            highlights[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * @return The wall layer, first copied onto the heap if it is a read-only mapping
+     */
+    private LongBuffer writableWalls() {
+        if (walls.isReadOnly()) {
+            long[] wallCopy = new long[wordCount(width, height)];
+            walls.get(0, wallCopy);
+            walls = LongBuffer.wrap(wallCopy);
+        }
+        return walls;
+    }
+
+    /**
+     * @return The number of longs needed to hold one bit per tile
+     */
+    static int wordCount(int w, int h) {
+        return (int) (((long) w * h + 63) >>> 6);
+    }
 }
@@ -0,0 +1,115 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves and loads Maps in a compact, versioned binary format. All values are little-endian:
+ * <pre>
+ *   offset  size  field
+ *   0       4     magic "PFMP"
+ *   4       4     format version (currently 1)
+ *   8       4     width
+ *   12      4     height
+ *   16      8     start x, start y
+ *   24      8     target x, target y
+ *   32      8     reserved, zero
+ *   40      ...   wall layer: (width * height + 63) / 64 longs, one bit per tile indexed by y * width + x
+ * </pre>
+ * The wall layer begins on an 8-byte boundary so that a loaded Map can use the memory-mapped file directly as its
+ * wall bitset. Highlighted tiles are editor-only and are not saved.
+ */
+public class MapFile {
+    private static final int MAGIC = 0x504D4650; // "PFMP" read as a little-endian int
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    /**
+     * Number of longs written to the file per write call when saving.
+     */
+    private static final int WRITE_CHUNK = 8192;
+
+    /**
+     * Writes the map to the given file, replacing it if it exists. The wall layer is streamed straight from the Map's
+     * bitset in fixed-size chunks, so saving needs no memory proportional to the map size.
+     */
+    public static void save(Map map, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(map.getWidth()).putInt(map.getHeight());
+            header.putInt(map.getStartCoord().x()).putInt(map.getStartCoord().y());
+            header.putInt(map.getTargetCoord().x()).putInt(map.getTargetCoord().y());
+            header.putLong(0);
+            header.flip();
+            writeFully(channel, header);
+
+            LongBuffer walls = map.getWallBits();
+            int words = Map.wordCount(map.getWidth(), map.getHeight());
+            ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int word = 0; word < words; word += WRITE_CHUNK) {
+                int count = Math.min(WRITE_CHUNK, words - word);
+                chunk.clear();
+                for (int i = 0; i < count; i++)
+                    chunk.putLong(walls.get(word + i));
+                chunk.flip();
+                writeFully(channel, chunk);
+            }
+        }
+    }
+
+    /**
+     * Opens a saved map by memory-mapping the file. The wall layer is never copied onto the heap: the returned Map
+     * reads its walls straight from the mapping, so only the pages a search touches are ever loaded. The file is only
+     * opened for reading, so it may be read-only or on a read-only filesystem. Edits to the returned Map are private
+     * to it and are never written back: the first edit copies the wall layer onto the heap.
+     * @throws IOException if the file cannot be read, or is not a map file this version understands
+     */
+    public static Map load(Path file) throws IOException {
+        MappedByteBuffer mapped = map(file);
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        long size = mapped.capacity();
+        if (mapped.getInt(0) != MAGIC)
+            throw new IOException("Not a map file, bad magic number: " + file);
+        int version = mapped.getInt(4);
+        if (version != VERSION)
+            throw new IOException("Unsupported map file version " + version + ": " + file);
+        int width = mapped.getInt(8);
+        int height = mapped.getInt(12);
+        Coordinate start = new Coordinate(mapped.getInt(16), mapped.getInt(20));
+        Coordinate target = new Coordinate(mapped.getInt(24), mapped.getInt(28));
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE)
+            throw new IOException("Invalid map dimensions " + width + "x" + height + ": " + file);
+        int words = Map.wordCount(width, height);
+        if (size < HEADER_SIZE + (long) words * Long.BYTES)
+            throw new IOException("Map file is truncated: " + file);
+
+        LongBuffer walls = mapped.position(HEADER_SIZE).slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        Map map = new Map(width, height, walls, start, target);
+        if (!map.isInBounds(start) || !map.isInBounds(target))
+            throw new IOException("Start or target lies outside the map: " + file);
+        return map;
+    }
+
+    /**
+     * Maps the whole file read-only. The mapping stays valid after the channel is closed.
+     */
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException("Not a map file, too short: " + file);
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("Map file is larger than a single mapping allows: " + file);
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Builds reproducible test maps. Every generator takes a seed, and the same seed and size always produce the same
+ * map. The start is the open tile nearest the top-left corner and the target is the open tile nearest the
+ * bottom-right corner, so searches cross the whole map.
+ */
+public class MapGenerator {
+    /**
+     * Names of the available generators, as accepted by generate.
+     */
+    protected static final String[] generatorOptions = {"open", "random", "maze", "rooms"};
+
+    /**
+     * Builds a map using the named generator.
+     * @param generator one of generatorOptions
+     * @param density fraction of tiles that are walls, only used by the "random" generator
+     */
+    public static Map generate(String generator, int width, int height, double density, long seed) {
+        if (generator.equals("open"))
+            return openField(width, height);
+        else if (generator.equals("random"))
+            return randomObstacles(width, height, density, seed);
+        else if (generator.equals("maze"))
+            return maze(width, height, seed);
+        else if (generator.equals("rooms"))
+            return roomsAndCorridors(width, height, seed);
+        throw new IllegalArgumentException("Unknown generator: " + generator);
+    }
+
+    /**
+     * @return A map with no walls at all
+     */
+    public static Map openField(int width, int height) {
+        return toMap(width, height, new BitSet());
+    }
+
+    /**
+     * @return A map where each tile is independently a wall with the given probability
+     */
+    public static Map randomObstacles(int width, int height, double density, long seed) {
+        Random random = new Random(seed);
+        BitSet walls = new BitSet(width * height);
+        for (int i = 0; i < width * height; i++)
+            if (random.nextDouble() < density)
+                walls.set(i);
+        return toMap(width, height, walls);
+    }
+
+    /**
+     * Carves a perfect maze with the recursive backtracker: passages run between tiles at odd coordinates, and every
+     * open tile is reachable from every other by exactly one route of single-tile-wide corridors.
+     */
+    public static Map maze(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BitSet walls = new BitSet(width * height);
+        walls.set(0, width * height);
+        int[][] steps = {{0, -2}, {2, 0}, {0, 2}, {-2, 0}};
+        // Stack of cells still being carved from, stored as flat indices
+        int[] stack = new int[width * height / 4 + 1];
+        int size = 0;
+        stack[size++] = width + 1;
+        walls.clear(width + 1);
+        while (size > 0) {
+            int cell = stack[size - 1];
+            int x = cell % width;
+            int y = cell / width;
+            // Pick a random unvisited neighbor two tiles away
+            int options = 0;
+            int[] choices = new int[4];
+            for (int i = 0; i < 4; i++) {
+                int nx = x + steps[i][0];
+                int ny = y + steps[i][1];
+                if (nx > 0 && ny > 0 && nx < width - 1 && ny < height - 1 && walls.get(ny * width + nx))
+                    choices[options++] = i;
+            }
+            if (options == 0) {
+                size--;
+                continue;
+            }
+            int[] step = steps[choices[random.nextInt(options)]];
+            walls.clear((y + step[1] / 2) * width + x + step[0] / 2);
+            walls.clear((y + step[1]) * width + x + step[0]);
+            stack[size++] = (y + step[1]) * width + x + step[0];
+        }
+        return toMap(width, height, walls);
+    }
+
+    /**
+     * Places random non-overlapping rectangular rooms, then joins each room to the previous one with an L-shaped
+     * corridor, giving a connected building-like layout.
+     */
+    public static Map roomsAndCorridors(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BitSet walls = new BitSet(width * height);
+        walls.set(0, width * height);
+        int maxRoom = Math.max(3, Math.min(width, height) / 8);
+        int attempts = Math.max(10, width * height / (maxRoom * maxRoom));
+        ArrayList<int[]> rooms = new ArrayList<>();
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            int w = 2 + random.nextInt(maxRoom - 1);
+            int h = 2 + random.nextInt(maxRoom - 1);
+            if (w >= width - 2 || h >= height - 2)
+                continue;
+            int x = 1 + random.nextInt(width - w - 1);
+            int y = 1 + random.nextInt(height - h - 1);
+            boolean overlaps = false;
+            for (int[] room : rooms)
+                if (x <= room[0] + room[2] && room[0] <= x + w && y <= room[1] + room[3] && room[1] <= y + h) {
+                    overlaps = true;
+                    break;
+                }
+            if (overlaps)
+                continue;
+            for (int row = y; row < y + h; row++)
+                walls.clear(row * width + x, row * width + x + w);
+            if (!rooms.isEmpty()) {
+                int[] previous = rooms.get(rooms.size() - 1);
+                carveCorridor(walls, width, previous[0] + previous[2] / 2, previous[1] + previous[3] / 2,
+                        x + w / 2, y + h / 2);
+            }
+            rooms.add(new int[]{x, y, w, h});
+        }
+        return toMap(width, height, walls);
+    }
+
+    /**
+     * Opens a horizontal then vertical corridor between two tiles.
+     */
+    private static void carveCorridor(BitSet walls, int width, int x1, int y1, int x2, int y2) {
+        for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++)
+            walls.clear(y1 * width + x);
+        for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++)
+            walls.clear(y * width + x2);
+    }
+
+    /**
+     * Builds the Map, placing the start on the open tile nearest the top-left and the target on the open tile nearest
+     * the bottom-right. If every tile is a wall, the corners are used.
+     */
+    private static Map toMap(int width, int height, BitSet walls) {
+        int first = walls.nextClearBit(0);
+        int last = walls.previousClearBit(width * height - 1);
+        if (first >= width * height || first == last) {
+            first = 0;
+            last = width * height - 1;
+        }
+        Map map = new Map(width, height, new ArrayList<>(), new Coordinate(first % width, first / width),
+                new Coordinate(last % width, last / width));
+        for (int i = walls.nextSetBit(0); i >= 0 && i < width * height; i = walls.nextSetBit(i + 1))
+            map.setWall(new Coordinate(i % width, i / width));
+        return map;
+    }
+}
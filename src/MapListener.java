@@ -0,0 +1,14 @@
+/**
+ * Receives a callback whenever a tile of a Map changes. Register with Map.addListener.
+ */
+public interface MapListener {
+    /**
+     * Called after a tile has changed. Moving the start or target reports both the tile it left and the tile it
+     * moved to.
+     * @param map the Map that changed
+     * @param tile the tile that changed
+     * @param previous the tile's code in Map.legend before the change
+     * @param current the tile's code in Map.legend after the change
+     */
+    void tileChanged(Map map, Coordinate tile, int previous, int current);
+}
@@ -0,0 +1,278 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers one query on many threads, for single long routes over huge maps where a sequential search is bound to one
+ * core. This is delta-stepping with a bucket width of 10: tiles are settled in buckets of distance [10b, 10b + 10),
+ * and every tile of a bucket is expanded in parallel, split across a ForkJoinPool the same way BatchPathFinder splits
+ * its queries. Since no move costs less than 10, expanding a bucket can only reach later buckets, so each bucket is
+ * settled in a single parallel pass, and only the next two buckets can ever be filled (a move adds 10 or 14). The
+ * cost found is the same optimal cost as SearchContext's searches.
+ *
+ * Each tile's distance and the direction it was reached from are packed into one long of an AtomicLongArray and
+ * lowered by compare-and-set, so threads relaxing the same tile never lose an improvement. The long also holds an
+ * epoch stamp, chosen so that any value from an earlier query compares higher than every value of the current one;
+ * queries therefore never have to clear the array.
+ *
+ * Each leaf task gathers the tiles it adds in a pair of buffers, borrowed from the query's own pool of them and
+ * returned when the task is done, so a query allocates about one pair per thread, and nothing is left behind on the
+ * pool's threads once it returns.
+ *
+ * Costs and corner cutting are the same as SearchContext. The Map must not be edited while a query runs. Not
+ * thread-safe; one query runs at a time, using the whole pool.
+ */
+public class ParallelPathFinder {
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] STEP_COST = {10, 14, 10, 14, 10, 14, 10, 14};
+    /**
+     * Bucket width, the cost of the cheapest move
+     */
+    private static final int DELTA = 10;
+    /**
+     * Number of tiles below which a task stops splitting and expands its tiles directly. Buckets this small are
+     * expanded on the calling thread without involving the pool.
+     */
+    private static final int EXPAND_THRESHOLD = 512;
+    // Packed tile value: epoch stamp in bits 34 to 62, distance in bits 3 to 33, direction in bits 0 to 2
+    private static final int STAMP_SHIFT = 34;
+    private static final int MAX_EPOCH = (1 << 29) - 1;
+    private static final long UNREACHED = Long.MAX_VALUE;
+
+    private final Map map;
+    private final int width;
+    private final int height;
+    private final ForkJoinPool pool;
+    private final AtomicLongArray tiles;
+    private int epoch;
+    // Stamp of the current epoch, lower for later epochs
+    private long stamp;
+
+    // The three buckets that can hold tiles at once, bucket b in slot b % 3. Each is filled through an atomic size.
+    private final int[][] buckets = new int[3][];
+    private final AtomicInteger[] bucketSizes = {new AtomicInteger(), new AtomicInteger(), new AtomicInteger()};
+    private final LongAdder nodesExpanded = new LongAdder();
+
+    /**
+     * Creates a ParallelPathFinder that runs on the common ForkJoinPool.
+     */
+    public ParallelPathFinder(Map map) {
+        this(map, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool the pool whose threads expand each bucket
+     */
+    public ParallelPathFinder(Map map, ForkJoinPool pool) {
+        this.map = map;
+        this.pool = pool;
+        width = map.getWidth();
+        height = map.getHeight();
+        tiles = new AtomicLongArray(width * height);
+        for (int i = 0; i < width * height; i++)
+            tiles.lazySet(i, UNREACHED);
+        for (int slot = 0; slot < 3; slot++)
+            buckets[slot] = new int[1024];
+    }
+
+    /**
+     * Finds the cheapest route between two tiles of the Map.
+     */
+    public PathResult findPath(Coordinate start, Coordinate target) {
+        boolean recording = SearchStats.isRecording();
+        long begin = recording ? System.nanoTime() : 0;
+        PathResult result = findRoute(start, target);
+        if (recording)
+            SearchStats.record("Parallel", result, System.nanoTime() - begin);
+        return result;
+    }
+
+    private PathResult findRoute(Coordinate start, Coordinate target) {
+        if (!map.isInBounds(start) || !map.isInBounds(target))
+            throw new IllegalArgumentException("Start and target must be within the map");
+        newEpoch();
+        nodesExpanded.reset();
+        for (AtomicInteger size : bucketSizes)
+            size.set(0);
+        int startCell = indexOf(start);
+        int targetCell = indexOf(target);
+        tiles.set(startCell, pack(0, 0));
+        buckets[0][0] = startCell;
+        bucketSizes[0].set(1);
+        // Idle buffers of the leaf tasks, kept for every bucket of this query
+        ConcurrentLinkedQueue<int[][]> buffers = new ConcurrentLinkedQueue<>();
+
+        for (int bucket = 0; ; bucket++) {
+            long targetValue = tiles.get(targetCell);
+            // Once the target's bucket is settled its distance is final
+            if (isCurrent(targetValue) && distanceOf(targetValue) < bucket * DELTA)
+                return buildResult(startCell, targetCell);
+            int slot = bucket % 3;
+            int size = bucketSizes[slot].get();
+            if (size == 0) {
+                if (bucketSizes[(slot + 1) % 3].get() == 0 && bucketSizes[(slot + 2) % 3].get() == 0)
+                    return new PathResult(false, -1, List.of(), nodesExpanded.intValue());
+                continue;
+            }
+            // Every tile expanded adds at most 8 tiles to the next two buckets, so reserve room for that many now
+            for (int later = 1; later <= 2; later++)
+                ensureCapacity((slot + later) % 3, bucketSizes[(slot + later) % 3].get() + 8 * size);
+            ExpandTask task = new ExpandTask(bucket, buffers, 0, size);
+            if (size <= EXPAND_THRESHOLD)
+                task.compute();
+            else
+                pool.invoke(task);
+            bucketSizes[slot].set(0);
+        }
+    }
+
+    /**
+     * Expands the tiles of one bucket, skipping those whose distance has since dropped into an earlier bucket.
+     * @param bucket the bucket being settled
+     * @param buffers idle buffers for the tiles added to each of the next two buckets, which are gathered before being
+     *                copied in with one atomic add
+     */
+    private void expand(int bucket, ConcurrentLinkedQueue<int[][]> buffers, int from, int to) {
+        int[] tilesOfBucket = buckets[bucket % 3];
+        int[][] added = buffers.poll();
+        if (added == null)
+            added = new int[][] {new int[8 * EXPAND_THRESHOLD], new int[8 * EXPAND_THRESHOLD]};
+        int addedNext = 0;
+        int addedAfter = 0;
+        int expanded = 0;
+        for (int i = from; i < to; i++) {
+            int cell = tilesOfBucket[i];
+            int distance = distanceOf(tiles.get(cell));
+            if (distance / DELTA != bucket)
+                continue;
+            expanded++;
+            int x = cell % width;
+            int y = cell / width;
+            for (int dir = 0; dir < 8; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height)
+                    continue;
+                int next = ny * width + nx;
+                if (map.isWall(next))
+                    continue;
+                int totalDistance = distance + STEP_COST[dir];
+                long value = pack(totalDistance, dir);
+                long current = tiles.get(next);
+                while (value < current) {
+                    if (tiles.compareAndSet(next, current, value)) {
+                        // A tile lowered within the same bucket is already listed there
+                        if (!isCurrent(current) || distanceOf(current) / DELTA != totalDistance / DELTA) {
+                            if (totalDistance / DELTA == bucket + 1)
+                                added[0][addedNext++] = next;
+                            else
+                                added[1][addedAfter++] = next;
+                        }
+                        break;
+                    }
+                    current = tiles.get(next);
+                }
+            }
+        }
+        append(bucket + 1, added[0], addedNext);
+        append(bucket + 2, added[1], addedAfter);
+        buffers.offer(added);
+        nodesExpanded.add(expanded);
+    }
+
+    /**
+     * Copies tiles gathered by one task into a bucket, claiming their room with a single atomic add.
+     */
+    private void append(int bucket, int[] added, int count) {
+        if (count == 0)
+            return;
+        int slot = bucket % 3;
+        int offset = bucketSizes[slot].getAndAdd(count);
+        System.arraycopy(added, 0, buckets[slot], offset, count);
+    }
+
+    private void ensureCapacity(int slot, int capacity) {
+        if (buckets[slot].length < capacity)
+            buckets[slot] = Arrays.copyOf(buckets[slot], Math.max(capacity, buckets[slot].length * 2));
+    }
+
+    private PathResult buildResult(int startCell, int targetCell) {
+        ArrayList<Coordinate> path = new ArrayList<>();
+        int cell = targetCell;
+        path.add(new Coordinate(cell % width, cell / width));
+        while (cell != startCell) {
+            int dir = (int) (tiles.get(cell) & 7);
+            cell = (cell / width - DY[dir]) * width + cell % width - DX[dir];
+            path.add(new Coordinate(cell % width, cell / width));
+        }
+        Collections.reverse(path);
+        return new PathResult(true, distanceOf(tiles.get(targetCell)), path, nodesExpanded.intValue());
+    }
+
+    private long pack(int distance, int dir) {
+        return stamp | (long) distance << 3 | dir;
+    }
+
+    private boolean isCurrent(long value) {
+        return value >>> STAMP_SHIFT == stamp >>> STAMP_SHIFT;
+    }
+
+    /**
+     * @return The distance in a packed value, or Integer.MAX_VALUE if it is from an earlier query
+     */
+    private int distanceOf(long value) {
+        return isCurrent(value) ? (int) (value >>> 3 & Integer.MAX_VALUE) : Integer.MAX_VALUE;
+    }
+
+    private void newEpoch() {
+        epoch++;
+        if (epoch == MAX_EPOCH) {
+            epoch = 1;
+            for (int i = 0; i < width * height; i++)
+                tiles.lazySet(i, UNREACHED);
+        }
+        stamp = (long) (MAX_EPOCH - epoch) << STAMP_SHIFT;
+    }
+
+    private int indexOf(Coordinate tile) {
+        return tile.y() * width + tile.x();
+    }
+
+    /**
+     * Expands the tiles in [from, to) of a bucket, splitting the range in half until it is small enough to expand
+     * directly.
+     */
+    private class ExpandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int bucket;
+        private final ConcurrentLinkedQueue<int[][]> buffers;
+        private final int from;
+        private final int to;
+
+        ExpandTask(int bucket, ConcurrentLinkedQueue<int[][]> buffers, int from, int to) {
+            this.bucket = bucket;
+            this.buffers = buffers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= EXPAND_THRESHOLD) {
+                expand(bucket, buffers, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ExpandTask(bucket, buffers, from, middle), new ExpandTask(bucket, buffers, middle, to));
+        }
+    }
+}
@@ -0,0 +1,180 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A bounded cache of PathResults for one Map, answering repeated start and target pairs without searching again.
+ * The cache listens to the Map and, when a tile changes, evicts only the results the change could affect:
+ * <ul>
+ *   <li>A new wall only invalidates cached routes that pass through that tile. Every other route is still open, and
+ *   no route can have become cheaper.</li>
+ *   <li>A removed wall can only create routes through that tile, and any such route from s to t costs at least
+ *   octile(s, tile) + octile(tile, t). Cached routes already that cheap stay optimal; the rest are evicted, along with
+ *   every cached "no route" result.</li>
+ * </ul>
+ * Each entry keeps the bounding box of its route, so a new wall only scans the routes whose box contains the tile,
+ * rather than every cached route tile. Each entry also records the Map version it is valid for. Surviving entries are moved forward to the new version, and an
+ * entry whose version does not match the Map's is never returned, so missed notifications cannot serve stale
+ * routes.
+ *
+ * The cache is bounded both by number of entries and by the total number of route tiles held, evicting the least
+ * recently used results first. It is safe to use from several threads, though the Map must not be edited while a
+ * search is running.
+ */
+public class PathCache implements MapListener {
+    private final Map map;
+    private final PathFinder pathFinder;
+    private final String algorithm;
+    private final int maxEntries;
+    private final long maxTiles;
+
+    private final LinkedHashMap<PathQuery, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long tiles;
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    /**
+     * Creates a cache and starts listening to the map. Call close() to stop listening when the cache is discarded.
+     * @param algorithm one of the names in Algorithms.algorithmOptions, used to answer misses
+     * @param maxEntries most results held at once
+     * @param maxTiles most route tiles held at once, summed over all results
+     */
+    public PathCache(Map map, String algorithm, int maxEntries, long maxTiles) {
+        this.map = map;
+        this.pathFinder = new PathFinder(map);
+        this.algorithm = algorithm;
+        this.maxEntries = maxEntries;
+        this.maxTiles = maxTiles;
+        map.addListener(this);
+    }
+
+    /**
+     * Returns the cached result for this pair if it is still valid, otherwise searches and caches the result.
+     */
+    public PathResult findPath(Coordinate start, Coordinate target) {
+        PathQuery query = new PathQuery(start, target);
+        long version;
+        synchronized (this) {
+            version = map.getVersion();
+            Entry entry = entries.get(query);
+            if (entry != null && entry.version == version) {
+                hits++;
+                return entry.result;
+            }
+            misses++;
+        }
+        PathResult result = pathFinder.findPath(start, target, algorithm);
+        synchronized (this) {
+            // Only cache the result if the map did not change while searching
+            if (map.getVersion() == version)
+                put(query, new Entry(result, version));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void tileChanged(Map map, Coordinate tile, int previous, int current) {
+        boolean wallAdded = current == Map.WALL && previous != Map.WALL;
+        boolean wallRemoved = previous == Map.WALL && current != Map.WALL;
+        Iterator<java.util.Map.Entry<PathQuery, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            java.util.Map.Entry<PathQuery, Entry> next = iterator.next();
+            Entry entry = next.getValue();
+            if ((wallAdded && entry.passesThrough(tile))
+                    || (wallRemoved && couldImprove(next.getKey(), entry.result, tile))) {
+                iterator.remove();
+                tiles -= entry.result.path().size();
+                invalidations++;
+            }
+            else
+                entry.version = map.getVersion();
+        }
+    }
+
+    /**
+     * Stops listening to the map and empties the cache.
+     */
+    public synchronized void close() {
+        map.removeListener(this);
+        clear();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        tiles = 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return Number of results evicted because a Map edit could have changed them
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void put(PathQuery query, Entry entry) {
+        Entry old = entries.put(query, entry);
+        if (old != null)
+            tiles -= old.result.path().size();
+        tiles += entry.result.path().size();
+        // Evict least recently used results until within both bounds
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || tiles > maxTiles) && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            tiles -= eldest.result.path().size();
+        }
+    }
+
+    /**
+     * @return true if opening the tile could give the query a cheaper route than the cached one, or any route at all
+     */
+    private static boolean couldImprove(PathQuery query, PathResult result, Coordinate tile) {
+        if (!result.routeExists())
+            return true;
+        int cheapestThroughTile = Algorithms.octileDistance(query.start(), tile)
+                + Algorithms.octileDistance(tile, query.target());
+        return cheapestThroughTile < result.cost();
+    }
+
+    private static class Entry {
+        private final PathResult result;
+        private long version;
+        // Bounding box of the route's tiles, empty when there is no route
+        private int minX = Integer.MAX_VALUE;
+        private int minY = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE;
+        private int maxY = Integer.MIN_VALUE;
+
+        Entry(PathResult result, long version) {
+            this.result = result;
+            this.version = version;
+            for (Coordinate tile : result.path()) {
+                minX = Math.min(minX, tile.x());
+                minY = Math.min(minY, tile.y());
+                maxX = Math.max(maxX, tile.x());
+                maxY = Math.max(maxY, tile.y());
+            }
+        }
+
+        /**
+         * @return true if the route goes through the tile. The route is only scanned if the tile is inside its box.
+         */
+        boolean passesThrough(Coordinate tile) {
+            if (tile.x() < minX || tile.x() > maxX || tile.y() < minY || tile.y() > maxY)
+                return false;
+            return result.path().contains(tile);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Entry point for running pathfinding queries against a Map. A single instance can serve any number of queries,
+ * including concurrent ones from different threads. Each query borrows an idle SearchContext from the PathFinder's own
+ * workspaces, or creates one if all are in use, and returns it when done; so a PathFinder keeps one set of search
+ * arrays per query it has run at once, and repeated queries do not allocate new ones. Unless SearchStats is
+ * recording, the only allocation per query is the route returned. The workspaces belong to the PathFinder, so they are
+ * freed with it rather than left behind on the threads that ran its queries. The Map must not be edited while queries
+ * are running; use Map.copy() to take a snapshot when the original may keep changing.
+ */
+public class PathFinder {
+    private final Map map;
+    private final String tieBreaking;
+    private final ConnectivityIndex connectivity;
+    private final Heuristic heuristic;
+    private final HierarchicalPathFinder hierarchical;
+    // Idle workspaces, taken by one query at a time
+    private final ConcurrentLinkedQueue<SearchContext> contexts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<AnytimeSearch> anytimeSearches = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Creates a PathFinder for the given map, breaking A* ties in favor of tiles further from the start.
+     */
+    public PathFinder(Map map) {
+        this(map, "high g");
+    }
+
+    /**
+     * @param tieBreaking one of Algorithms.tieBreakOptions
+     */
+    public PathFinder(Map map, String tieBreaking) {
+        this(map, tieBreaking, null);
+    }
+
+    /**
+     * Creates a PathFinder that rejects queries between disconnected regions without searching.
+     * @param tieBreaking one of Algorithms.tieBreakOptions
+     * @param connectivity an index kept up to date with the same map, or null to always search
+     */
+    public PathFinder(Map map, String tieBreaking, ConnectivityIndex connectivity) {
+        this(map, tieBreaking, connectivity, null);
+    }
+
+    /**
+     * Creates a PathFinder whose A* and Jump Point searches estimate with the given heuristic, such as a
+     * LandmarkTable kept up to date with the same map.
+     * @param tieBreaking one of Algorithms.tieBreakOptions
+     * @param connectivity an index kept up to date with the same map, or null to always search
+     * @param heuristic a lower bound on route costs, or null for the octile distance
+     */
+    public PathFinder(Map map, String tieBreaking, ConnectivityIndex connectivity, Heuristic heuristic) {
+        this(map, tieBreaking, connectivity, heuristic, null);
+    }
+
+    /**
+     * Creates a PathFinder that answers Hierarchical queries on the given HierarchicalPathFinder. Those queries take
+     * turns on it, since it is not thread-safe; every other algorithm still runs concurrently.
+     * @param tieBreaking one of Algorithms.tieBreakOptions
+     * @param connectivity an index kept up to date with the same map, or null to always search
+     * @param heuristic a lower bound on route costs, or null for the octile distance
+     * @param hierarchical an abstraction kept up to date with the same map, or null to reject Hierarchical queries
+     */
+    public PathFinder(Map map, String tieBreaking, ConnectivityIndex connectivity, Heuristic heuristic,
+                      HierarchicalPathFinder hierarchical) {
+        this.map = map;
+        this.tieBreaking = tieBreaking;
+        this.connectivity = connectivity;
+        this.heuristic = heuristic;
+        this.hierarchical = hierarchical;
+    }
+
+    /**
+     * Finds the cheapest route between the Map's own start and target tiles.
+     * @param algorithm one of the names in Algorithms.algorithmOptions
+     */
+    public PathResult findPath(String algorithm) {
+        return findPath(map.getStartCoord(), map.getTargetCoord(), algorithm);
+    }
+
+    /**
+     * Finds the cheapest route between any two tiles of the Map.
+     * @param algorithm one of the names in Algorithms.algorithmOptions
+     */
+    public PathResult findPath(Coordinate start, Coordinate target, String algorithm) {
+        if (connectivity != null && !connectivity.isConnected(start, target))
+            return new PathResult(false, -1, List.of(), 0);
+        if (algorithm.equals("Hierarchical")) {
+            if (hierarchical == null)
+                throw new IllegalArgumentException("Hierarchical searches need a HierarchicalPathFinder");
+            synchronized (hierarchical) {
+                return hierarchical.findPath(start, target);
+            }
+        }
+        SearchContext search = contexts.poll();
+        if (search == null)
+            search = new SearchContext(map, tieBreaking, heuristic);
+        try {
+            search.reset(start, target, algorithm);
+            return search.run();
+        }
+        finally {
+            contexts.offer(search);
+        }
+    }
+
+    /**
+     * Finds a route within a latency budget, using AnytimeSearch from AnytimeSearch.DEFAULT_WEIGHT. A first route
+     * costing at most that many times the cheapest is usually found early, and is improved until the route is
+     * optimal or the budget runs out.
+     * @param timeoutNanos time allowed for the search
+     * @param maxExpanded most tiles the search may expand, over all of its iterations
+     * @return The best route found, with the bound proven for its cost
+     */
+    public AnytimeResult findPathWithin(Coordinate start, Coordinate target, long timeoutNanos, int maxExpanded) {
+        if (connectivity != null && !connectivity.isConnected(start, target))
+            return new AnytimeResult(new PathResult(false, -1, List.of(), 0), Double.POSITIVE_INFINITY, 0, true);
+        AnytimeSearch search = anytimeSearches.poll();
+        if (search == null)
+            search = new AnytimeSearch(map);
+        try {
+            return search.search(start, target, timeoutNanos, maxExpanded, AnytimeSearch.DEFAULT_WEIGHT);
+        }
+        finally {
+            anytimeSearches.offer(search);
+        }
+    }
+
+    /**
+     * Prepares a search without running it, for callers that want to step through it one tile at a time. The
+     * context belongs to the caller, who may reset it for further queries.
+     * @param algorithm one of the names in Algorithms.algorithmOptions
+     */
+    public SearchContext newSearch(Coordinate start, Coordinate target, String algorithm) {
+        return new SearchContext(map, start, target, algorithm, tieBreaking, heuristic);
+    }
+
+    public Map getMap() {
+        return map;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * A single start and target pair to be answered by a BatchPathFinder.
+ */
+public record PathQuery(Coordinate start, Coordinate target) {}
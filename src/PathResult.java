@@ -0,0 +1,14 @@
+import java.util.List;
+
+/**
+ * The immutable outcome of one pathfinding query.
+ * @param routeExists whether the target can be reached from the start
+ * @param cost total cost of the route using 10 per cardinal and 14 per diagonal step, or -1 if there is no route
+ * @param path every tile of the route in order, from start to target inclusive. Empty if there is no route.
+ * @param nodesExpanded number of tiles the search explored
+ */
+public record PathResult(boolean routeExists, int cost, List<Coordinate> path, int nodesExpanded) {
+    public PathResult {
+        path = List.copyOf(path);
+    }
+}
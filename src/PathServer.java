@@ -0,0 +1,394 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Headless server answering pathfinding queries from other processes over a local TCP or Unix-domain socket.
+ *
+ * The protocol is line-based ASCII. Every request starts with an id chosen by the client, which is echoed at the
+ * start of its response. A client may send many requests without waiting for their answers; they are searched in
+ * parallel and answered as they finish, so responses can arrive in a different order than the requests.
+ * <pre>
+ *   request                                       response
+ *   id PATH sx sy tx ty algorithm                 id PATH cost nodes x0 y0 x1 y1 ...
+ *                                                 id NOPATH nodes
+ *   (anything malformed, or a failed search)      id ERROR message
+ * </pre>
+ * The algorithm is the rest of the line, one of Algorithms.algorithmOptions other than Hierarchical. Lines longer than
+ * MAX_LINE characters are answered with an error without being searched.
+ *
+ * Queries are answered against an immutable snapshot of the Map, held by an AtomicReference. The process running the
+ * server swaps in a new snapshot with reload, in one step: queries already running finish against the snapshot they
+ * started on, and every later query sees the new one, so no query is dropped or sees a half-loaded map. Clients
+ * cannot reload, since that would let anyone able to connect make the server read any file it can.
+ *
+ * Each connection has its own reader and writer threads, virtual threads when the JVM has them (Java 21 or later)
+ * and pooled platform threads otherwise, since both spend their lives blocked on the socket. Searches are CPU-bound
+ * and run on a fixed pool with one platform thread per processor. Each search thread keeps one SearchContext and
+ * resets it against whichever snapshot its next query reads, so a reload allocates nothing on the search threads
+ * unless the map's size changes. A finished search hands its response to the connection's writer through a queue and
+ * moves on, so a client that stops reading only stalls its own writer, never the search pool. At most MAX_IN_FLIGHT
+ * requests per connection are searching or waiting to be written; beyond that the reader stops reading, which pushes
+ * back on the client through the socket.
+ */
+public class PathServer implements Closeable {
+    /**
+     * Most requests of one connection that may be queued or searching at once
+     */
+    private static final int MAX_IN_FLIGHT = 256;
+    /**
+     * Longest request line read, in characters. A PATH request needs well under 100; longer lines are answered with
+     * an error, and only their first MAX_LINE characters are kept in memory.
+     */
+    private static final int MAX_LINE = 1024;
+    /**
+     * Queued after a connection's last response, telling its writer to stop. Responses are never empty.
+     */
+    private static final String END_OF_RESPONSES = "";
+
+    private final AtomicReference<Map> snapshot;
+    private final ServerSocketChannel server;
+    private final ExecutorService connections = newConnectionExecutor();
+    private final ExecutorService searches;
+    private final Path socketFile;
+    // The SearchContext of each search thread, created by its first query
+    private final ThreadLocal<SearchContext> workspaces = new ThreadLocal<>();
+
+    /**
+     * Starts a server on a loopback TCP port.
+     * @param map the map to answer queries against; it is copied, so the original can keep being edited
+     * @param port the port to listen on, or 0 for any free port
+     */
+    public static PathServer openTcp(Map map, int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return new PathServer(map, server, null);
+    }
+
+    /**
+     * Starts a server on a Unix-domain socket, replacing any socket file left at the path by an earlier server.
+     * @param map the map to answer queries against; it is copied, so the original can keep being edited
+     */
+    public static PathServer openUnix(Map map, Path socketFile) throws IOException {
+        Files.deleteIfExists(socketFile);
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketFile));
+        return new PathServer(map, server, socketFile);
+    }
+
+    private PathServer(Map map, ServerSocketChannel server, Path socketFile) {
+        this.snapshot = new AtomicReference<>(map.copy());
+        this.server = server;
+        this.socketFile = socketFile;
+        searches = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "path-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // A platform thread that is not a daemon, so a server keeps the JVM running until it is closed
+        new Thread(this::accept, "path-server").start();
+    }
+
+    /**
+     * Replaces the map queries are answered against. Queries already running finish on the previous map.
+     * @param map the new map; it is copied, so the original can keep being edited
+     */
+    public void reload(Map map) {
+        snapshot.set(map.copy());
+    }
+
+    /**
+     * Replaces the map with one saved by MapFile. The loaded map is never edited, so it is used without copying.
+     * @throws IOException if the file cannot be read, or is not a map file
+     */
+    public void reload(Path file) throws IOException {
+        snapshot.set(MapFile.load(file));
+    }
+
+    /**
+     * @return The snapshot new queries are answered against
+     */
+    public Map getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * @return The address the server is listening on, including the chosen port when opened on port 0
+     */
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Stops accepting connections and abandons those still open.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdownNow();
+        searches.shutdownNow();
+        if (socketFile != null)
+            Files.deleteIfExists(socketFile);
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(channel));
+            }
+        }
+        catch (ClosedChannelException | RejectedExecutionException e) {
+            // The server was closed
+        }
+        catch (IOException e) {
+            System.err.println("PathServer stopped accepting connections: " + e);
+        }
+    }
+
+    /**
+     * Reads requests from one connection until the client closes it, then waits for its outstanding requests to be
+     * answered before closing the connection. The connection's writer runs alongside, on a thread of its own.
+     */
+    private void serve(SocketChannel channel) {
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        try (channel;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                     StandardCharsets.US_ASCII))) {
+            connections.execute(() -> write(channel, responses, inFlight));
+            try {
+                StringBuilder line = new StringBuilder();
+                while (readLine(in, line)) {
+                    String request = line.toString();
+                    if (request.isBlank())
+                        continue;
+                    inFlight.acquire();
+                    if (request.length() > MAX_LINE)
+                        responses.add(idOf(request) + " ERROR Request line longer than " + MAX_LINE + " characters");
+                    else
+                        searches.execute(() -> respond(request, responses));
+                }
+                // Every permit is back once every response has been written
+                inFlight.acquire(MAX_IN_FLIGHT);
+            }
+            finally {
+                responses.add(END_OF_RESPONSES);
+            }
+        }
+        catch (IOException | InterruptedException | RejectedExecutionException e) {
+            // The client went away or the server was closed; nothing is left to answer
+        }
+    }
+
+    /**
+     * Reads one line into the builder, without its line break. Carriage returns are dropped, and past MAX_LINE + 1
+     * characters the rest of the line is skipped, so a line longer than MAX_LINE is left as exactly that long.
+     * @return false at the end of the stream, if no characters were left to read
+     */
+    private static boolean readLine(Reader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = in.read()) != -1 && c != '\n')
+            if (c != '\r' && line.length() <= MAX_LINE)
+                line.append((char) c);
+        return c != -1 || line.length() > 0;
+    }
+
+    /**
+     * Writes a connection's responses in the order they are queued, freeing a request's place in flight once its
+     * response is written. If the client goes away, the channel is closed so the reader stops, and the remaining
+     * responses are dropped.
+     */
+    private static void write(SocketChannel channel, BlockingQueue<String> responses, Semaphore inFlight) {
+        boolean open = true;
+        try {
+            while (true) {
+                String response = responses.take();
+                if (response.isEmpty())
+                    return;
+                if (open)
+                    open = writeLine(channel, response);
+                inFlight.release();
+            }
+        }
+        catch (InterruptedException e) {
+            // The server was closed
+        }
+    }
+
+    /**
+     * Writes one response straight to the channel. A stream from Channels.newOutputStream would share a lock with the
+     * reader's input stream and block until a request arrives.
+     * @return false if the client went away, after closing the channel
+     */
+    private static boolean writeLine(SocketChannel channel, String response) {
+        ByteBuffer line = StandardCharsets.US_ASCII.encode(response + "\n");
+        try {
+            while (line.hasRemaining())
+                channel.write(line);
+            return true;
+        }
+        catch (IOException e) {
+            try {
+                channel.close();
+            }
+            catch (IOException ignored) {
+                // Already closing
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Answers one request and queues its response. The response is queued in a finally block, so a request whose
+     * search fails with an Error is still answered, and its place in flight is still freed once that is written.
+     */
+    private void respond(String request, BlockingQueue<String> responses) {
+        String response = null;
+        try {
+            response = answer(request);
+        }
+        finally {
+            responses.add(response != null ? response : idOf(request) + " ERROR Internal error");
+        }
+    }
+
+    /**
+     * @return The response line for one request, without its line break. Only throws Errors, so that every request
+     * is answered.
+     */
+    private String answer(String request) {
+        String[] parts = request.trim().split(" +", 3);
+        String id = parts[0];
+        if (parts.length < 3)
+            return id + " ERROR Expected: id command arguments";
+        try {
+            if (!parts[1].equals("PATH"))
+                return id + " ERROR Unknown command: " + parts[1];
+            return id + findPath(parts[2]);
+        }
+        catch (RuntimeException e) {
+            return id + " ERROR " + (e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+    }
+
+    /**
+     * @return The id a request starts with
+     */
+    private static String idOf(String request) {
+        return request.trim().split(" +", 2)[0];
+    }
+
+    private String findPath(String arguments) {
+        String[] parts = arguments.split(" +", 5);
+        if (parts.length < 5)
+            throw new IllegalArgumentException("Expected: id PATH sx sy tx ty algorithm");
+        Coordinate start = new Coordinate(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        Coordinate target = new Coordinate(Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        String algorithm = parts[4];
+        if (!Arrays.asList(Algorithms.algorithmOptions).contains(algorithm))
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        if (algorithm.equals("Hierarchical"))
+            throw new IllegalArgumentException("Hierarchical searches are not served");
+        PathResult result = search(start, target, algorithm);
+        if (!result.routeExists())
+            return " NOPATH " + result.nodesExpanded();
+        StringBuilder response = new StringBuilder(" PATH ").append(result.cost()).append(' ')
+                .append(result.nodesExpanded());
+        for (Coordinate tile : result.path())
+            response.append(' ').append(tile.x()).append(' ').append(tile.y());
+        return response.toString();
+    }
+
+    /**
+     * Runs one search on this thread's SearchContext, reset against the current snapshot. A new context is only made
+     * for the thread's first query, or when a reload changed the map's size.
+     */
+    private PathResult search(Coordinate start, Coordinate target, String algorithm) {
+        // Read the snapshot once, so a reload during the search cannot change the map under it
+        Map map = snapshot.get();
+        SearchContext search = workspaces.get();
+        if (search == null || search.getMap().getWidth() != map.getWidth()
+                || search.getMap().getHeight() != map.getHeight()) {
+            search = new SearchContext(map, start, target, algorithm, "high g");
+            workspaces.set(search);
+        }
+        else
+            search.reset(map, start, target, algorithm);
+        return search.run();
+    }
+
+    /**
+     * @return An executor starting one virtual thread per task when the JVM supports them, looked up by reflection so
+     * the project still builds for Java 17, or a cached thread pool otherwise
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "path-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Runs a server until the process is killed. Main starts the same server when given --serve.
+     * Usage: java PathServer [map=file | generator=random size=256 density=0.25 seed=42] [port=7070 | socket=path]
+     */
+    public static void main(String[] args) throws IOException {
+        String mapFile = null;
+        String generator = "random";
+        int size = 256;
+        double density = 0.25;
+        long seed = 42;
+        int port = 7070;
+        String socket = null;
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            switch (parts[0]) {
+                case "map" -> mapFile = parts[1];
+                case "generator" -> generator = parts[1];
+                case "size" -> size = Integer.parseInt(parts[1]);
+                case "density" -> density = Double.parseDouble(parts[1]);
+                case "seed" -> seed = Long.parseLong(parts[1]);
+                case "port" -> port = Integer.parseInt(parts[1]);
+                case "socket" -> socket = parts[1];
+                default -> throw new IllegalArgumentException("Unknown option: " + parts[0]);
+            }
+        }
+        Map map = mapFile != null ? MapFile.load(Path.of(mapFile))
+                : MapGenerator.generate(generator, size, size, density, seed);
+        PathServer server = socket != null ? openUnix(map, Path.of(socket)) : openTcp(map, port);
+        System.out.println("Serving a " + map.getWidth() + "x" + map.getHeight() + " map on " + server.getAddress());
+    }
+}
@@ -0,0 +1,808 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds all the state of a single pathfinding query: the distances, search statuses and directions of every tile,
+ * the frontier, and whether the search has finished. The Map is only ever read, so any number of SearchContexts
+ * can search the same Map at once, on different threads, as long as nothing edits the Map meanwhile.
+ *
+ * A SearchContext can be stepped one tile at a time (for visualization) or run to completion. It is not itself
+ * thread-safe; each query should own its context.
+ *
+ * Tile state is kept in flat arrays indexed by y * width + x, with directions stored as indices into DX and DY. The
+ * arrays are never cleared between queries: each tile records the epoch of the query that last touched it, and a tile
+ * from an older epoch reads as unsearched. reset() therefore only bumps the epoch, and a reused context searches
+ * without allocating anything until the route is built. Recording SearchStats, which is off by default, adds one
+ * SearchMetrics and one SearchEvent per search.
+ */
+public class SearchContext {
+    private static final int INFINITY = Integer.MAX_VALUE;
+    // The same codes as Algorithms.statusCodes
+    private static final byte UNSEARCHED = 0;
+    private static final byte SEARCHED = 1;
+    private static final byte FRONTIER = 2;
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] STEP_COST = {10, 14, 10, 14, 10, 14, 10, 14};
+    private static final String[] DIRECTION_NAMES = {"N", "NE", "E", "SE", "S", "SW", "W", "NW"};
+    private static final int HIGH_G = 0;
+    private static final int LOW_G = 1;
+    private static final int NO_TIE_BREAK = 2;
+
+    private Map map;
+    private final int tieBreaking;
+    // Replaces the octile distance for A* and Jump Point when set
+    private final Heuristic heuristic;
+    private final int width;
+    private final int height;
+    // Flat index offset of the neighbor in each direction
+    private final int[] offsets = new int[8];
+    private Coordinate start;
+    private Coordinate target;
+    private int startCell;
+    private int targetCell;
+    private String algorithm;
+    private boolean useHeuristic;
+
+    // Tile state, only meaningful where epochs[cell] == epoch
+    private int epoch;
+    private final int[] epochs;
+    private final byte[] searchStatus;
+    private final int[] values;
+    // Index into DX/DY of the step from each tile back towards the start, or -1
+    private final byte[] directions;
+    private final IndexedMinHeap frontier;
+    private int[] jumpParent;
+    private boolean jumping;
+    // Frontier for Dial, used instead of the heap. Allocated the first time it is needed.
+    private BucketQueue buckets;
+    private boolean dial;
+    // Second search from the target, for Bidirectional. Allocated the first time it is needed.
+    private int[] targetEpochs;
+    private byte[] targetSearchStatus;
+    private int[] targetValues;
+    private byte[] targetDirections;
+    private IndexedMinHeap targetFrontier;
+    private boolean bidirectional;
+    private int bestMeetingCost;
+    private int meetingCell;
+    private boolean lastStepFromTarget;
+
+    private boolean done;
+    private boolean routeExists;
+    private int nodesExpanded;
+    private int nodesGenerated;
+    private int decreaseKeys;
+    private int peakOpenSize;
+    private long elapsedNanos;
+    private int lastSearched;
+    private final int[] newFrontier = new int[8];
+    private int newFrontierSize;
+
+    /**
+     * Prepares a search from start to target. Breadth-first is a uniform-cost (Dijkstra) search: the frontier is
+     * kept in an IndexedMinHeap keyed by distance from start. A* additionally orders each frontier tile by the octile
+     * distance to the target, with ties broken by tieBreaking. Jump Point is A* that jumps in straight lines until
+     * it reaches a tile where the route could turn (a jump point), so only jump points ever enter the frontier.
+     * Bidirectional runs two uniform-cost searches, one from each end, stepping whichever has the lower frontier.
+     * Dial is the same search as Breadth-First, with the heap replaced by a BucketQueue.
+     * @param map Map containing the wall structure to pathfind in
+     * @param algorithm one of the names in Algorithms.algorithmOptions
+     * @param tieBreaking one of Algorithms.tieBreakOptions, used by A* and Jump Point
+     */
+    public SearchContext(Map map, Coordinate start, Coordinate target, String algorithm, String tieBreaking) {
+        this(map, start, target, algorithm, tieBreaking, null);
+    }
+
+    /**
+     * Prepares a search whose A* and Jump Point estimates come from the given heuristic, such as a LandmarkTable for
+     * the same Map, instead of the octile distance.
+     * @param heuristic a lower bound on route costs, or null for the octile distance
+     */
+    public SearchContext(Map map, Coordinate start, Coordinate target, String algorithm, String tieBreaking,
+                         Heuristic heuristic) {
+        this(map, tieBreaking, heuristic);
+        prepare(start, target, algorithm);
+    }
+
+    /**
+     * Allocates a context without preparing any search, for callers that will reset it before every query. Nothing
+     * may be read from the context or stepped until reset has been called.
+     * @param tieBreaking one of Algorithms.tieBreakOptions, used by A* and Jump Point
+     * @param heuristic a lower bound on route costs, or null for the octile distance
+     */
+    public SearchContext(Map map, String tieBreaking, Heuristic heuristic) {
+        this.map = map;
+        this.heuristic = heuristic;
+        if (tieBreaking.equals("high g"))
+            this.tieBreaking = HIGH_G;
+        else if (tieBreaking.equals("low g"))
+            this.tieBreaking = LOW_G;
+        else
+            this.tieBreaking = NO_TIE_BREAK;
+        width = map.getWidth();
+        height = map.getHeight();
+        for (int dir = 0; dir < 8; dir++)
+            offsets[dir] = DY[dir] * width + DX[dir];
+        epochs = new int[width * height];
+        searchStatus = new byte[width * height];
+        values = new int[width * height];
+        directions = new byte[width * height];
+        frontier = new IndexedMinHeap(width * height);
+        // Leave the context inert until the first reset
+        done = true;
+    }
+
+    /**
+     * Discards the current search and prepares a new one on the same Map, reusing this context's arrays instead of
+     * allocating new ones. Takes constant time, apart from emptying whatever was left on the frontier.
+     * @param algorithm one of the names in Algorithms.algorithmOptions
+     */
+    public void reset(Coordinate start, Coordinate target, String algorithm) {
+        frontier.clear();
+        if (buckets != null)
+            buckets.clear();
+        if (targetFrontier != null)
+            targetFrontier.clear();
+        routeExists = false;
+        nodesExpanded = 0;
+        nodesGenerated = 0;
+        decreaseKeys = 0;
+        peakOpenSize = 0;
+        elapsedNanos = 0;
+        lastStepFromTarget = false;
+        prepare(start, target, algorithm);
+    }
+
+    /**
+     * Like reset, but the new search and every later one run on another Map of the same size, such as a newer
+     * snapshot of the Map this context was created for. The heuristic, if any, is kept, so it must suit that Map too.
+     * @throws IllegalArgumentException if the Map's width or height differs from this context's
+     */
+    public void reset(Map map, Coordinate start, Coordinate target, String algorithm) {
+        if (map.getWidth() != width || map.getHeight() != height)
+            throw new IllegalArgumentException("A context can only move to a map of the same size");
+        this.map = map;
+        reset(start, target, algorithm);
+    }
+
+    private void prepare(Coordinate start, Coordinate target, String algorithm) {
+        if (!isAlgorithm(algorithm))
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        if (algorithm.equals("Hierarchical"))
+            throw new IllegalArgumentException("Hierarchical searches cannot be stepped; use a HierarchicalPathFinder");
+        if (!map.isInBounds(start) || !map.isInBounds(target))
+            throw new IllegalArgumentException("Start and target must be within the map");
+        this.start = start;
+        this.target = target;
+        this.algorithm = algorithm;
+        startCell = indexOf(start);
+        targetCell = indexOf(target);
+        bidirectional = algorithm.equals("Bidirectional");
+        dial = algorithm.equals("Dial");
+        useHeuristic = !algorithm.equals("Breadth-First") && !bidirectional && !dial;
+        jumping = algorithm.equals("Jump Point");
+        if (useHeuristic && heuristic != null)
+            heuristic.prepare();
+        if (jumping && jumpParent == null)
+            jumpParent = new int[width * height];
+        lastSearched = -1;
+        newFrontierSize = 0;
+        done = false;
+
+        // A new epoch makes every tile read as unsearched. Only when it wraps around are the arrays really cleared.
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            epoch = 1;
+            Arrays.fill(epochs, 0);
+            if (targetEpochs != null)
+                Arrays.fill(targetEpochs, 0);
+        }
+
+        nodesGenerated = bidirectional ? 2 : 1;
+
+        // Enter the start coordinate
+        touch(startCell);
+        searchStatus[startCell] = FRONTIER;
+        values[startCell] = 0;
+        touch(targetCell);
+        if (dial) {
+            if (buckets == null)
+                buckets = new BucketQueue(14);
+            buckets.push(startCell, 0);
+        }
+        else
+            frontier.push(startCell, priority(0, startCell));
+
+        if (bidirectional) {
+            if (targetFrontier == null) {
+                targetEpochs = new int[width * height];
+                targetSearchStatus = new byte[width * height];
+                targetValues = new int[width * height];
+                targetDirections = new byte[width * height];
+                targetFrontier = new IndexedMinHeap(width * height);
+            }
+            touchFromTarget(targetCell);
+            targetSearchStatus[targetCell] = FRONTIER;
+            targetValues[targetCell] = 0;
+            // A walled-in target is never entered from the start side, so the target side must not leave it either
+            if (startCell == targetCell || !map.isWall(targetCell))
+                targetFrontier.push(targetCell, 0);
+            bestMeetingCost = startCell == targetCell ? 0 : INFINITY;
+            meetingCell = startCell == targetCell ? startCell : -1;
+        }
+    }
+
+    /**
+     * Progresses the search by one step. Sets done = true when finished, and then hands the search's metrics to
+     * SearchStats. Steps are not timed: a stepped search spends most of its time in the caller's pauses between
+     * steps, and reading the clock every step would cost more than many of the steps themselves. SearchStats counts
+     * the search but leaves it out of its latency figures.
+     */
+    public void step() {
+        if (done)
+            return;
+        advance();
+        if (done && SearchStats.isRecording())
+            SearchStats.record(getMetrics());
+    }
+
+    /**
+     * Runs the search to completion without any visualization pauses. Timed as a whole, so recording stats costs
+     * nothing per step.
+     * @return the result of the search
+     */
+    public PathResult run() {
+        boolean recording = SearchStats.isRecording();
+        long begin = recording ? System.nanoTime() : 0;
+        boolean wasDone = done;
+        while (!done)
+            advance();
+        if (recording && !wasDone) {
+            elapsedNanos += System.nanoTime() - begin;
+            SearchStats.record(getMetrics());
+        }
+        return getResult();
+    }
+
+    /**
+     * Takes one step of the selected algorithm and tracks the peak frontier size.
+     */
+    private void advance() {
+        if (jumping)
+            stepJumpPointSearch();
+        else if (bidirectional)
+            stepBidirectionalSearch();
+        else
+            stepBreadthFirstSearch();
+        int openSize = (dial ? buckets.size() : frontier.size()) + (bidirectional ? targetFrontier.size() : 0);
+        if (openSize > peakOpenSize)
+            peakOpenSize = openSize;
+    }
+
+    public Map getMap() {
+        return map;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean routeExists() {
+        return routeExists;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public Coordinate getStart() {
+        return start;
+    }
+
+    public Coordinate getTarget() {
+        return target;
+    }
+
+    /**
+     * @return The tile explored by the last step, or null before the first step
+     */
+    public Coordinate getLastSearched() {
+        return lastSearched < 0 ? null : coordinateOf(lastSearched);
+    }
+
+    /**
+     * @return The flat index (y * width + x) of the tile explored by the last step, or -1 before the first step
+     */
+    public int getLastSearchedIndex() {
+        return lastSearched;
+    }
+
+    /**
+     * @return true if the last step was taken by the search from the target, which only happens in Bidirectional
+     */
+    public boolean isLastStepFromTarget() {
+        return lastStepFromTarget;
+    }
+
+    /**
+     * @return The tiles added to the frontier by the last step
+     */
+    public List<Coordinate> getNewFrontier() {
+        ArrayList<Coordinate> tiles = new ArrayList<>(newFrontierSize);
+        for (int i = 0; i < newFrontierSize; i++)
+            tiles.add(coordinateOf(newFrontier[i]));
+        return Collections.unmodifiableList(tiles);
+    }
+
+    /**
+     * @return The number of tiles added to the frontier by the last step
+     */
+    public int getNewFrontierSize() {
+        return newFrontierSize;
+    }
+
+    /**
+     * @return The flat index of the i-th tile added to the frontier by the last step
+     */
+    public int getNewFrontierIndex(int i) {
+        if (i < 0 || i >= newFrontierSize)
+            throw new IndexOutOfBoundsException(i);
+        return newFrontier[i];
+    }
+
+    /**
+     * @return The key in Algorithms.dirCodes pointing from the given tile one step back towards the start, or null if
+     * the tile has not been reached
+     */
+    public String getDirection(Coordinate tile) {
+        int cell = indexOf(tile);
+        if (epochs[cell] != epoch || directions[cell] < 0)
+            return null;
+        return DIRECTION_NAMES[directions[cell]];
+    }
+
+    /**
+     * @return The counters recorded so far. Only complete once done is true.
+     */
+    public SearchMetrics getMetrics() {
+        return new SearchMetrics(algorithm, routeExists, nodesExpanded, nodesGenerated, decreaseKeys, peakOpenSize,
+                routeExists ? pathLength() : 0, routeExists ? values[targetCell] : -1, elapsedNanos);
+    }
+
+    /**
+     * @return The number of tiles in the route, counted by following the directions back from the target without
+     * building it
+     */
+    private int pathLength() {
+        int length = 1;
+        for (int cell = targetCell; cell != startCell; cell += offsets[directions[cell]])
+            length++;
+        return length;
+    }
+
+    /**
+     * @return An immutable summary of the search. Only complete once done is true.
+     */
+    public PathResult getResult() {
+        if (!routeExists)
+            return new PathResult(false, -1, List.of(), nodesExpanded);
+        ArrayList<Coordinate> path = new ArrayList<>();
+        int cell = targetCell;
+        path.add(target);
+        while (cell != startCell) {
+            cell += offsets[directions[cell]];
+            path.add(coordinateOf(cell));
+        }
+        Collections.reverse(path);
+        return new PathResult(true, values[targetCell], path, nodesExpanded);
+    }
+
+    /**
+     * Explores one new tile and updates the frontier around that tile.
+     */
+    private void stepBreadthFirstSearch() {
+        int toSearch = frontierEmpty() ? -1 : findLowestFrontier();
+        // Nothing left to explore, the search has failed
+        if (toSearch < 0) {
+            routeExists = false;
+            done = true;
+            return;
+        }
+        // Return true if best route has been found
+        if(values[toSearch] >= values[targetCell]) {
+            routeExists = true;
+            done = true;
+        }
+
+        // Complete one step of the search
+        searchStatus[toSearch] = SEARCHED;
+        nodesExpanded++;
+        breadthExpandFrontier(toSearch, false);
+
+        // If the frontier is empty before the target was reached, the search has failed
+        if (!done && frontierEmpty()) {
+            routeExists = false;
+            done = true;
+        }
+
+        lastSearched = toSearch;
+    }
+
+    /**
+     * Explores one tile from whichever end has the lower frontier distance. Every time a tile is reached from one end
+     * after already being reached from the other, the route through it is a candidate, and the cheapest candidate is
+     * kept. The search stops once the two lowest frontier distances add up to at least that candidate: any other
+     * route would have to pass through a tile still unexplored from both ends, so it cannot be cheaper. The two
+     * halves are then joined at the meeting tile.
+     */
+    private void stepBidirectionalSearch() {
+        if (frontier.isEmpty() || targetFrontier.isEmpty()
+                || frontier.peekKey() + targetFrontier.peekKey() >= bestMeetingCost) {
+            // One side running out means every tile it can reach has been explored, so the best candidate is final
+            routeExists = meetingCell >= 0;
+            done = true;
+            if (routeExists)
+                joinAtMeeting();
+            return;
+        }
+        lastStepFromTarget = targetFrontier.peekKey() < frontier.peekKey();
+        int toSearch = lastStepFromTarget ? targetFrontier.pop() : frontier.pop();
+        byte[] statuses = lastStepFromTarget ? targetSearchStatus : searchStatus;
+        statuses[toSearch] = SEARCHED;
+        nodesExpanded++;
+        breadthExpandFrontier(toSearch, lastStepFromTarget);
+        lastSearched = toSearch;
+    }
+
+    /**
+     * Extends the directions from the start side past the meeting tile all the way to the target, by reversing the
+     * directions the target side recorded, so the route can be followed from the target like any other search.
+     */
+    private void joinAtMeeting() {
+        int cell = meetingCell;
+        while (cell != targetCell) {
+            int towardsTarget = targetDirections[cell];
+            cell += offsets[towardsTarget];
+            touch(cell);
+            directions[cell] = (byte) ((towardsTarget + 4) % 8);
+        }
+        values[targetCell] = bestMeetingCost;
+    }
+
+    /**
+     * Explores one jump point and adds the jump points reachable from it to the frontier. Once the target is reached,
+     * directions is filled in for every tile along the route, so the route can be followed tile-by-tile like any
+     * other search.
+     */
+    private void stepJumpPointSearch() {
+        // Nothing left to explore, the search has failed
+        if (frontier.isEmpty()) {
+            routeExists = false;
+            done = true;
+            return;
+        }
+        int toSearch = findLowestFrontier();
+        searchStatus[toSearch] = SEARCHED;
+        nodesExpanded++;
+        lastSearched = toSearch;
+        newFrontierSize = 0;
+        if (toSearch == targetCell) {
+            routeExists = true;
+            done = true;
+            fillJumpDirections();
+            return;
+        }
+
+        int x = toSearch % width;
+        int y = toSearch / width;
+        int neighbors = jumpNeighbors(toSearch);
+        for (int dir = 0; dir < 8; dir++) {
+            if ((neighbors & (1 << dir)) == 0)
+                continue;
+            int jumpPoint = jump(x + DX[dir], y + DY[dir], DX[dir], DY[dir]);
+            if (jumpPoint < 0 || statusOf(jumpPoint) == SEARCHED)
+                continue;
+            // Every jump is a straight line, so its cost is exactly the octile distance
+            int totalDistance = values[toSearch] + octileDistance(toSearch, jumpPoint);
+            if (statusOf(jumpPoint) == UNSEARCHED) {
+                touch(jumpPoint);
+                searchStatus[jumpPoint] = FRONTIER;
+                newFrontier[newFrontierSize++] = jumpPoint;
+                values[jumpPoint] = totalDistance;
+                jumpParent[jumpPoint] = toSearch;
+                frontier.push(jumpPoint, priority(totalDistance, jumpPoint));
+                nodesGenerated++;
+            }
+            else if (values[jumpPoint] > totalDistance) {
+                values[jumpPoint] = totalDistance;
+                jumpParent[jumpPoint] = toSearch;
+                frontier.decreaseKey(jumpPoint, priority(totalDistance, jumpPoint));
+                decreaseKeys++;
+            }
+        }
+
+        // If the frontier is empty, the search has failed
+        if (frontier.isEmpty()) {
+            routeExists = false;
+            done = true;
+        }
+    }
+
+    /**
+     * Removes the frontier tile with the lowest key from the heap, or for Dial the lowest bucket. Dial leaves stale
+     * entries behind when a tile's distance is lowered, which are skipped here.
+     * @return The tile with the lowest key, or -1 if only stale entries were left
+     */
+    private int findLowestFrontier(){
+        if (dial) {
+            while (!buckets.isEmpty()) {
+                int cell = buckets.pop();
+                if (searchStatus[cell] != SEARCHED && values[cell] == buckets.currentDistance())
+                    return cell;
+            }
+            return -1;
+        }
+        return frontier.pop();
+    }
+
+    /**
+     * @return true if nothing is left on the frontier. For Dial, stale entries count until they are popped.
+     */
+    private boolean frontierEmpty() {
+        return dial ? buckets.isEmpty() : frontier.isEmpty();
+    }
+
+    /**
+     * @return The heap key for a frontier tile. Breadth-first orders by distance alone. A* orders by estimated total
+     * cost in the high 32 bits, with the tie-breaker in the low 32 bits. The estimate is the octile distance unless a
+     * heuristic was given.
+     */
+    private long priority(int distance, int cell) {
+        if (!useHeuristic)
+            return distance;
+        int estimate = heuristic == null ? octileDistance(cell, targetCell) : heuristic.estimate(cell, targetCell);
+        long key = (long) (distance + estimate) << 32;
+        if (tieBreaking == HIGH_G)
+            return key | (Integer.MAX_VALUE - distance);
+        else if (tieBreaking == LOW_G)
+            return key | distance;
+        return key;
+    }
+
+    /**
+     * Uses the Map to explore the frontier around the given tile. Walls and out of bounds tiles are disregarded.
+     * All other tiles are given the frontier status, with their values and directions being updated if necessary.
+     * @param fromTarget true to expand the target side of a bidirectional search instead of the start side
+     */
+    private void breadthExpandFrontier(int searched, boolean fromTarget){
+        int[] epochs = fromTarget ? targetEpochs : this.epochs;
+        int[] values = fromTarget ? targetValues : this.values;
+        byte[] searchStatus = fromTarget ? targetSearchStatus : this.searchStatus;
+        byte[] directions = fromTarget ? targetDirections : this.directions;
+        IndexedMinHeap frontier = fromTarget ? targetFrontier : this.frontier;
+        newFrontierSize = 0;
+        int x = searched % width;
+        int y = searched / width;
+        for (int dir = 0; dir < 8; dir++) {
+            int nx = x + DX[dir];
+            int ny = y + DY[dir];
+            if (nx < 0 || ny < 0 || nx >= width || ny >= height)
+                continue;
+            int next = searched + offsets[dir];
+            boolean touched = epochs[next] == epoch;
+            if ((touched && searchStatus[next] == SEARCHED) || map.isWall(next))
+                continue;
+            int totalDistance = values[searched] + STEP_COST[dir];
+            if (!touched || searchStatus[next] == UNSEARCHED) {
+                if (fromTarget)
+                    touchFromTarget(next);
+                else
+                    touch(next);
+                searchStatus[next] = FRONTIER;
+                newFrontier[newFrontierSize++] = next;
+                values[next] = totalDistance;
+                // The step back towards where this side started is the opposite direction
+                directions[next] = (byte) ((dir + 4) % 8);
+                if (dial)
+                    buckets.push(next, totalDistance);
+                else
+                    frontier.push(next, priority(totalDistance, next));
+                nodesGenerated++;
+            }
+            else if (values[next] > totalDistance) {
+                values[next] = totalDistance;
+                directions[next] = (byte) ((dir + 4) % 8);
+                if (dial)
+                    buckets.push(next, totalDistance);
+                else
+                    frontier.decreaseKey(next, priority(totalDistance, next));
+                decreaseKeys++;
+            }
+            else
+                continue;
+            if (bidirectional)
+                checkMeeting(next);
+        }
+    }
+
+    /**
+     * Keeps the cheapest route found so far through a tile reached from both ends of a bidirectional search.
+     */
+    private void checkMeeting(int cell) {
+        if (statusOf(cell) == UNSEARCHED || targetEpochs[cell] != epoch || targetSearchStatus[cell] == UNSEARCHED)
+            return;
+        int cost = values[cell] + targetValues[cell];
+        if (cost < bestMeetingCost) {
+            bestMeetingCost = cost;
+            meetingCell = cell;
+        }
+    }
+
+    /**
+     * @return The directions worth jumping in from the given jump point, as one bit per index into DX/DY. Arriving
+     * from a parent, only the natural continuations of that move and the neighbors forced by adjacent walls can lead
+     * to a shorter route; every other neighbor is reached at least as cheaply through the parent. The start tile
+     * jumps in all eight directions.
+     */
+    private int jumpNeighbors(int cell) {
+        int parent = jumpParent[cell];
+        if (parent < 0)
+            return 0xFF;
+        int x = cell % width;
+        int y = cell / width;
+        int dx = Integer.signum(x - parent % width);
+        int dy = Integer.signum(y - parent / width);
+        int neighbors = 0;
+        if (dx != 0 && dy != 0) {
+            neighbors |= directionBit(0, dy) | directionBit(dx, 0) | directionBit(dx, dy);
+            if (!isWalkable(x - dx, y))
+                neighbors |= directionBit(-dx, dy);
+            if (!isWalkable(x, y - dy))
+                neighbors |= directionBit(dx, -dy);
+        }
+        else if (dx != 0) {
+            neighbors |= directionBit(dx, 0);
+            if (!isWalkable(x, y + 1))
+                neighbors |= directionBit(dx, 1);
+            if (!isWalkable(x, y - 1))
+                neighbors |= directionBit(dx, -1);
+        }
+        else {
+            neighbors |= directionBit(0, dy);
+            if (!isWalkable(x + 1, y))
+                neighbors |= directionBit(1, dy);
+            if (!isWalkable(x - 1, y))
+                neighbors |= directionBit(-1, dy);
+        }
+        return neighbors;
+    }
+
+    /**
+     * Moves from (x, y) in the direction (dx, dy) until reaching a jump point: the target, or a tile with a forced
+     * neighbor. Diagonal moves also stop where a straight jump from the current tile would find a jump point.
+     * @return The jump point, or -1 if a wall or the edge of the map is reached first
+     */
+    private int jump(int x, int y, int dx, int dy) {
+        while (isWalkable(x, y)) {
+            int cell = y * width + x;
+            if (cell == targetCell)
+                return cell;
+            if (dx != 0 && dy != 0) {
+                if ((isWalkable(x - dx, y + dy) && !isWalkable(x - dx, y))
+                        || (isWalkable(x + dx, y - dy) && !isWalkable(x, y - dy)))
+                    return cell;
+                if (jump(x + dx, y, dx, 0) >= 0 || jump(x, y + dy, 0, dy) >= 0)
+                    return cell;
+            }
+            else if (dx != 0) {
+                if ((isWalkable(x + dx, y + 1) && !isWalkable(x, y + 1))
+                        || (isWalkable(x + dx, y - 1) && !isWalkable(x, y - 1)))
+                    return cell;
+            }
+            else {
+                if ((isWalkable(x + 1, y + dy) && !isWalkable(x + 1, y))
+                        || (isWalkable(x - 1, y + dy) && !isWalkable(x - 1, y)))
+                    return cell;
+            }
+            x += dx;
+            y += dy;
+        }
+        return -1;
+    }
+
+    /**
+     * Fills in directions for every tile between consecutive jump points on the route, from the target back to the
+     * start, so that the route can be followed one tile at a time.
+     */
+    private void fillJumpDirections() {
+        int current = targetCell;
+        while (jumpParent[current] >= 0) {
+            int parent = jumpParent[current];
+            int dir = directionIndex(Integer.signum(parent % width - current % width),
+                    Integer.signum(parent / width - current / width));
+            for (int cell = current; cell != parent; cell += offsets[dir]) {
+                touch(cell);
+                directions[cell] = (byte) dir;
+            }
+            current = parent;
+        }
+    }
+
+    /**
+     * Claims a tile for the current query, clearing whatever an older query left in it.
+     */
+    private void touch(int cell) {
+        if (epochs[cell] == epoch)
+            return;
+        epochs[cell] = epoch;
+        searchStatus[cell] = UNSEARCHED;
+        values[cell] = INFINITY;
+        directions[cell] = -1;
+        if (jumping)
+            jumpParent[cell] = -1;
+    }
+
+    /**
+     * Claims a tile for the target side of the current query.
+     */
+    private void touchFromTarget(int cell) {
+        if (targetEpochs[cell] == epoch)
+            return;
+        targetEpochs[cell] = epoch;
+        targetSearchStatus[cell] = UNSEARCHED;
+        targetValues[cell] = INFINITY;
+        targetDirections[cell] = -1;
+    }
+
+    private byte statusOf(int cell) {
+        return epochs[cell] == epoch ? searchStatus[cell] : UNSEARCHED;
+    }
+
+    private static boolean isAlgorithm(String algorithm) {
+        for (String option : Algorithms.algorithmOptions)
+            if (option.equals(algorithm))
+                return true;
+        return false;
+    }
+
+    /**
+     * @return The index into DX/DY of the given step
+     */
+    private static int directionIndex(int dx, int dy) {
+        for (int dir = 0; dir < 8; dir++)
+            if (DX[dir] == dx && DY[dir] == dy)
+                return dir;
+        throw new IllegalArgumentException("Not a step: " + dx + ", " + dy);
+    }
+
+    private static int directionBit(int dx, int dy) {
+        return 1 << directionIndex(dx, dy);
+    }
+
+    /**
+     * The same distance as Algorithms.octileDistance, between two flat indices
+     */
+    private int octileDistance(int a, int b) {
+        int dx = Math.abs(a % width - b % width);
+        int dy = Math.abs(a / width - b / width);
+        return 10 * Math.max(dx, dy) + 4 * Math.min(dx, dy);
+    }
+
+    private int indexOf(Coordinate tile) {
+        return tile.y() * width + tile.x();
+    }
+
+    private Coordinate coordinateOf(int cell) {
+        return new Coordinate(cell % width, cell / width);
+    }
+
+    /**
+     * @return true if (x, y) is inside the map and not a wall
+     */
+    private boolean isWalkable(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && !map.isWall(y * width + x);
+    }
+}
@@ -0,0 +1,44 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one completed search, committed by SearchStats. Enable it in a recording with
+ * -XX:StartFlightRecording and view it under the Pathfinding category.
+ */
+@Name("pathfinding.Search")
+@Label("Search")
+@Category("Pathfinding")
+@Description("A completed pathfinding search")
+public class SearchEvent extends Event {
+    @Label("Algorithm")
+    String algorithm;
+
+    @Label("Route Exists")
+    boolean routeExists;
+
+    @Label("Nodes Expanded")
+    int nodesExpanded;
+
+    @Label("Nodes Generated")
+    int nodesGenerated;
+
+    @Label("Decrease Keys")
+    int decreaseKeys;
+
+    @Label("Peak Open Size")
+    int peakOpenSize;
+
+    @Label("Path Length")
+    int pathLength;
+
+    @Label("Cost")
+    int cost;
+
+    @Label("Search Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long searchTime;
+}
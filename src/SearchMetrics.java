@@ -0,0 +1,16 @@
+/**
+ * Counters recorded by a SearchContext over one complete search. Hierarchical searches only fill in the route, the
+ * nodes expanded and the time.
+ * @param algorithm one of the names in Algorithms.algorithmOptions
+ * @param nodesExpanded tiles (or jump points) taken off the frontier and explored
+ * @param nodesGenerated tiles added to the frontier for the first time
+ * @param decreaseKeys times a tile already on the frontier was given a cheaper distance
+ * @param peakOpenSize most tiles on the frontier at once, over both ends of a bidirectional search
+ * @param pathLength tiles in the route, including start and target, or 0 if there is none
+ * @param cost cost of the route, or -1 if there is none
+ * @param nanos time spent inside SearchContext.run or HierarchicalPathFinder.findPath, or 0 if the search was stepped
+ * or instrumentation is disabled
+ */
+public record SearchMetrics(String algorithm, boolean routeExists, int nodesExpanded, int nodesGenerated,
+                            int decreaseKeys, int peakOpenSize, int pathLength, int cost, long nanos) {
+}
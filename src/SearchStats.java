@@ -0,0 +1,196 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the SearchMetrics of every completed search. Each search is committed as a SearchEvent to Flight Recorder,
+ * and aggregated per algorithm into counts and a latency histogram, readable over JMX as pathfinding:type=SearchStats.
+ * Searches are recorded under their names in Algorithms.algorithmOptions, and those of the searches with no name there
+ * under their own: Anytime, Sparse, Parallel and Bitboard. Stepped searches are counted but not timed, so they are
+ * left out of the latency figures.
+ *
+ * Recording is off unless the system property pathfinding.stats is true, and can be switched at any time through
+ * setEnabled or JMX. While it is off, a search only pays for a few integer counters and one volatile read when it
+ * finishes.
+ * Safe to use from several threads.
+ */
+public class SearchStats implements SearchStatsMBean {
+    /**
+     * Latency buckets: bucket i counts searches under 2^i microseconds, the last bucket counts everything slower
+     */
+    private static final int BUCKETS = 28;
+    private static final SearchStats instance = new SearchStats();
+    private static volatile boolean enabled = Boolean.parseBoolean(System.getProperty("pathfinding.stats", "false"));
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(instance,
+                    new ObjectName("pathfinding:type=SearchStats"));
+        } catch (JMException | SecurityException e) {
+            // Already registered by another class loader, or JMX unavailable: stats are still kept locally
+        }
+    }
+
+    private final ConcurrentHashMap<String, AlgorithmStats> algorithms = new ConcurrentHashMap<>();
+    private final LongAdder searchCount = new LongAdder();
+
+    private SearchStats() {
+    }
+
+    public static SearchStats getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return true if searches should be timed and recorded
+     */
+    protected static boolean isRecording() {
+        return enabled;
+    }
+
+    /**
+     * Records a search that only counts the tiles it expanded, such as one outside SearchContext.
+     * @param nanos time the search took
+     */
+    protected static void record(String algorithm, PathResult result, long nanos) {
+        record(new SearchMetrics(algorithm, result.routeExists(), result.nodesExpanded(), 0, 0, 0,
+                result.path().size(), result.cost(), nanos));
+    }
+
+    /**
+     * Commits the metrics of a completed search as a SearchEvent and adds them to the per-algorithm aggregates.
+     * Does nothing while recording is off.
+     */
+    protected static void record(SearchMetrics metrics) {
+        if (!enabled)
+            return;
+        SearchEvent event = new SearchEvent();
+        if (event.shouldCommit()) {
+            event.algorithm = metrics.algorithm();
+            event.routeExists = metrics.routeExists();
+            event.nodesExpanded = metrics.nodesExpanded();
+            event.nodesGenerated = metrics.nodesGenerated();
+            event.decreaseKeys = metrics.decreaseKeys();
+            event.peakOpenSize = metrics.peakOpenSize();
+            event.pathLength = metrics.pathLength();
+            event.cost = metrics.cost();
+            event.searchTime = metrics.nanos();
+            event.commit();
+        }
+        instance.searchCount.increment();
+        instance.algorithms.computeIfAbsent(metrics.algorithm(), key -> new AlgorithmStats()).add(metrics);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        SearchStats.enabled = enabled;
+    }
+
+    @Override
+    public long getSearchCount() {
+        return searchCount.sum();
+    }
+
+    @Override
+    public String[] getAlgorithmSummaries() {
+        ArrayList<String> summaries = new ArrayList<>();
+        algorithms.forEach((algorithm, stats) -> summaries.add(algorithm + ": " + stats));
+        summaries.sort(null);
+        return summaries.toArray(new String[0]);
+    }
+
+    @Override
+    public long[] getHistogramBucketsMicros() {
+        long[] bounds = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            bounds[i] = i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+        return bounds;
+    }
+
+    @Override
+    public long[] getLatencyHistogram(String algorithm) {
+        AlgorithmStats stats = algorithms.get(algorithm);
+        return stats == null ? new long[0] : stats.histogram();
+    }
+
+    @Override
+    public void reset() {
+        algorithms.clear();
+        searchCount.reset();
+    }
+
+    /**
+     * Aggregates of every recorded search of one algorithm. Latency only covers the timed searches.
+     */
+    private static class AlgorithmStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder timed = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder totalExpanded = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray latency = new AtomicLongArray(BUCKETS);
+
+        void add(SearchMetrics metrics) {
+            count.increment();
+            totalExpanded.add(metrics.nodesExpanded());
+            // A stepped search reports no time, which would read as an instant search
+            if (metrics.nanos() == 0)
+                return;
+            timed.increment();
+            totalNanos.add(metrics.nanos());
+            maxNanos.accumulate(metrics.nanos());
+            long micros = metrics.nanos() / 1000;
+            // Smallest bucket whose bound 2^i is above the latency
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            latency.incrementAndGet(bucket);
+        }
+
+        long[] histogram() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] = latency.get(i);
+            return counts;
+        }
+
+        /**
+         * @return The upper bound in microseconds of the bucket holding the given fraction of searches
+         */
+        long percentileMicros(long[] counts, long total, double fraction) {
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= Math.ceil(total * fraction))
+                    return 1L << i;
+            }
+            return 1L << (BUCKETS - 1);
+        }
+
+        @Override
+        public String toString() {
+            long n = count.sum();
+            if (n == 0)
+                return "0 searches";
+            long t = timed.sum();
+            if (t == 0)
+                return String.format("%d searches, %d expanded/search, none timed", n, totalExpanded.sum() / n);
+            long[] counts = histogram();
+            long total = 0;
+            for (long c : counts)
+                total += c;
+            return String.format("%d searches, %d expanded/search, %d timed: mean %d us, p50 < %d us, p90 < %d us, "
+                            + "p99 < %d us, max %d us", n, totalExpanded.sum() / n, t, totalNanos.sum() / t / 1000,
+                    percentileMicros(counts, total, 0.5), percentileMicros(counts, total, 0.9),
+                    percentileMicros(counts, total, 0.99), maxNanos.get() / 1000);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Management interface of SearchStats, registered as pathfinding:type=SearchStats.
+ */
+public interface SearchStatsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSearchCount();
+
+    /**
+     * @return One line per algorithm: searches, mean nodes expanded, and latency mean and percentiles in microseconds
+     * over the timed searches
+     */
+    String[] getAlgorithmSummaries();
+
+    /**
+     * @return Upper bound in microseconds of each latency histogram bucket; the last bucket has no upper bound
+     */
+    long[] getHistogramBucketsMicros();
+
+    /**
+     * @return Number of timed searches of the algorithm in each latency bucket, or an empty array if it has not run.
+     * Stepped searches are not timed, and are left out.
+     */
+    long[] getLatencyHistogram(String algorithm);
+
+    void reset();
+}
@@ -0,0 +1,158 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a SearchContext on its own thread so the visualizer never steps a search on the Swing event thread. Each step's
+ * searched tile and new frontier tiles are recorded into batches, which are published on a lock-free queue for the
+ * event thread to drain once per frame.
+ *
+ * The worker only takes as many steps as it has been allowed. The event thread allows a number of steps every frame
+ * to animate at a chosen speed, or lifts the limit entirely so the search runs at full speed while the display keeps
+ * up as best it can.
+ */
+public class SearchWorker implements Runnable {
+    protected static final byte SEARCHED = 0;
+    protected static final byte FRONTIER = 1;
+    protected static final byte SEARCHED_FROM_TARGET = 2;
+    protected static final byte FRONTIER_FROM_TARGET = 3;
+    /**
+     * Names of the step kinds above, as used by Display.showSearch
+     */
+    protected static final String[] kindNames = {"searched", "frontier", "searched from target", "frontier from target"};
+    /**
+     * Most steps recorded in one batch before it is published
+     */
+    private static final int BATCH_STEPS = 1024;
+
+    private final SearchContext search;
+    private final ConcurrentLinkedQueue<StepBatch> batches = new ConcurrentLinkedQueue<>();
+    private final AtomicLong allowance = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    public SearchWorker(SearchContext search) {
+        this.search = search;
+        thread = new Thread(this, "search-worker");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Lets the worker take up to this many more steps, replacing whatever it had not used yet.
+     */
+    public void allow(long steps) {
+        allowance.set(steps);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Lets the worker run to the end of the search without waiting.
+     */
+    public void unthrottle() {
+        allowance.set(Long.MAX_VALUE / 2);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops the worker after its current step. Batches already published stay in the queue.
+     */
+    public void cancel() {
+        cancelled = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * @return The oldest published batch of steps, or null if none is waiting
+     */
+    public StepBatch poll() {
+        return batches.poll();
+    }
+
+    /**
+     * @return true once the search is done and every step has been published. Only then may the SearchContext be
+     * read from another thread.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public SearchContext getSearch() {
+        return search;
+    }
+
+    @Override
+    public void run() {
+        StepBatch batch = new StepBatch();
+        while (!cancelled && !search.isDone()) {
+            if (allowance.get() <= 0) {
+                // Out of steps: show what has been done so far, then wait for the next frame
+                if (batch.steps > 0) {
+                    batches.add(batch);
+                    batch = new StepBatch();
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            allowance.decrementAndGet();
+            search.step();
+            record(batch);
+            if (batch.steps == BATCH_STEPS) {
+                batches.add(batch);
+                batch = new StepBatch();
+            }
+        }
+        if (batch.steps > 0)
+            batches.add(batch);
+        finished = !cancelled;
+    }
+
+    /**
+     * Adds the tiles changed by the search's last step to the batch.
+     */
+    private void record(StepBatch batch) {
+        batch.steps++;
+        if (search.getLastSearchedIndex() < 0)
+            return;
+        boolean fromTarget = search.isLastStepFromTarget();
+        batch.add(search.getLastSearchedIndex(), fromTarget ? SEARCHED_FROM_TARGET : SEARCHED);
+        for (int i = 0; i < search.getNewFrontierSize(); i++)
+            batch.add(search.getNewFrontierIndex(i), fromTarget ? FRONTIER_FROM_TARGET : FRONTIER);
+    }
+
+    /**
+     * The tiles changed by a run of consecutive steps, in order, as flat indices with the kind of each change.
+     */
+    public static class StepBatch {
+        private int[] tiles = new int[64];
+        private byte[] kinds = new byte[64];
+        private int size;
+        private int steps;
+
+        private void add(int tile, byte kind) {
+            if (size == tiles.length) {
+                tiles = Arrays.copyOf(tiles, size * 2);
+                kinds = Arrays.copyOf(kinds, size * 2);
+            }
+            tiles[size] = tile;
+            kinds[size++] = kind;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getTile(int i) {
+            return tiles[i];
+        }
+
+        public byte getKind(int i) {
+            return kinds[i];
+        }
+    }
+}
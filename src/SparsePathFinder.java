@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A* over any Grid, storing state only for the tiles it reaches. SearchContext keeps arrays covering every tile of
+ * its Map, which is impossible for a world of billions of tiles; this search instead numbers tiles as it reaches them
+ * and finds them again through a hash table keyed by their packed coordinates, so its memory grows with the explored
+ * region alone. Over a ChunkedWorld, only the chunks along that region are ever read from disk.
+ *
+ * Costs, corner cutting and the octile heuristic are the same as SearchContext's A*, with ties broken towards tiles
+ * further from the start. Since a search for an unreachable target could otherwise explore the whole world, each
+ * query stops after maxExpanded tiles and reports that no route was found. isExhausted tells such a query apart from
+ * one that proved there is no route.
+ *
+ * The finder reuses its storage between queries. Not thread-safe; each thread should own its finder.
+ */
+public class SparsePathFinder {
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] STEP_COST = {10, 14, 10, 14, 10, 14, 10, 14};
+
+    private final Grid grid;
+    private final int maxExpanded;
+
+    // Open-addressing table of node + 1 for each reached tile, 0 marking a free slot
+    private int[] table = new int[1024];
+    // Per node: packed coordinate, distance from start, parent node, and whether it has been expanded
+    private long[] tiles = new long[512];
+    private int[] values = new int[512];
+    private int[] parents = new int[512];
+    private boolean[] searched = new boolean[512];
+    private int nodeCount;
+    private boolean exhausted;
+    private final IndexedMinHeap open = new IndexedMinHeap(512);
+
+    /**
+     * @param maxExpanded most tiles one query may expand before giving up
+     */
+    public SparsePathFinder(Grid grid, int maxExpanded) {
+        if (maxExpanded < 1)
+            throw new IllegalArgumentException("A search must be allowed to expand at least one tile");
+        this.grid = grid;
+        this.maxExpanded = maxExpanded;
+    }
+
+    /**
+     * Finds the cheapest route between two tiles of the Grid.
+     * @return The route, or no route if the target cannot be reached or the search expanded maxExpanded tiles first.
+     * isExhausted tells the two apart.
+     */
+    public PathResult findPath(Coordinate start, Coordinate target) {
+        boolean recording = SearchStats.isRecording();
+        long begin = recording ? System.nanoTime() : 0;
+        PathResult result = findRoute(start, target);
+        if (recording)
+            SearchStats.record("Sparse", result, System.nanoTime() - begin);
+        return result;
+    }
+
+    private PathResult findRoute(Coordinate start, Coordinate target) {
+        if (!grid.isInBounds(start.x(), start.y()) || !grid.isInBounds(target.x(), target.y()))
+            throw new IllegalArgumentException("Start and target must be within the grid");
+        clear();
+        exhausted = false;
+        int first = nodeOf(start.x(), start.y());
+        values[first] = 0;
+        open.push(first, priority(0, start.x(), start.y(), target));
+
+        int nodesExpanded = 0;
+        while (!open.isEmpty() && nodesExpanded < maxExpanded) {
+            int node = open.pop();
+            searched[node] = true;
+            nodesExpanded++;
+            int x = (int) tiles[node];
+            int y = (int) (tiles[node] >>> 32);
+            if (x == target.x() && y == target.y())
+                return buildResult(node, nodesExpanded);
+            for (int dir = 0; dir < 8; dir++) {
+                int nx = x + DX[dir];
+                int ny = y + DY[dir];
+                if (!grid.isInBounds(nx, ny) || grid.isWall(nx, ny))
+                    continue;
+                int next = nodeOf(nx, ny);
+                if (searched[next])
+                    continue;
+                int totalDistance = values[node] + STEP_COST[dir];
+                if (totalDistance >= values[next])
+                    continue;
+                values[next] = totalDistance;
+                parents[next] = node;
+                open.pushOrDecrease(next, priority(totalDistance, nx, ny, target));
+            }
+        }
+        // Tiles left to expand mean the search gave up rather than ran out of places to go
+        exhausted = !open.isEmpty();
+        return new PathResult(false, -1, List.of(), nodesExpanded);
+    }
+
+    /**
+     * @return true if the last query found no route only because it expanded maxExpanded tiles first, so a route may
+     * still exist. false after a query that found a route or showed that none exists.
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * @return Number of tiles reached by the last query, which is what its memory use grows with
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    private PathResult buildResult(int node, int nodesExpanded) {
+        ArrayList<Coordinate> path = new ArrayList<>();
+        int cost = values[node];
+        for (; node >= 0; node = parents[node])
+            path.add(new Coordinate((int) tiles[node], (int) (tiles[node] >>> 32)));
+        Collections.reverse(path);
+        return new PathResult(true, cost, path, nodesExpanded);
+    }
+
+    /**
+     * The same A* key as SearchContext with "high g" tie-breaking: estimated total cost in the high 32 bits, then
+     * the lowest key for the highest distance from start.
+     */
+    private static long priority(int distance, int x, int y, Coordinate target) {
+        int dx = Math.abs(x - target.x());
+        int dy = Math.abs(y - target.y());
+        long estimate = distance + 10L * Math.max(dx, dy) + 4L * Math.min(dx, dy);
+        return estimate << 32 | (Integer.MAX_VALUE - distance);
+    }
+
+    /**
+     * @return The node for the tile, numbering it first if this query has not reached it yet
+     */
+    private int nodeOf(int x, int y) {
+        long tile = (long) y << 32 | x;
+        int mask = table.length - 1;
+        int slot = hash(tile) & mask;
+        while (table[slot] != 0) {
+            int node = table[slot] - 1;
+            if (tiles[node] == tile)
+                return node;
+            slot = (slot + 1) & mask;
+        }
+        int node = nodeCount++;
+        if (node == tiles.length)
+            grow();
+        tiles[node] = tile;
+        values[node] = INFINITY;
+        parents[node] = -1;
+        searched[node] = false;
+        table[slot] = node + 1;
+        // Keep the table at most half full
+        if (nodeCount * 2 > table.length)
+            rehash(table.length * 2);
+        return node;
+    }
+
+    private void grow() {
+        int capacity = tiles.length * 2;
+        tiles = Arrays.copyOf(tiles, capacity);
+        values = Arrays.copyOf(values, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        searched = Arrays.copyOf(searched, capacity);
+        open.ensureCapacity(capacity);
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int node = 0; node < nodeCount; node++) {
+            int slot = hash(tiles[node]) & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = node + 1;
+        }
+    }
+
+    private void clear() {
+        Arrays.fill(table, 0);
+        open.clear();
+        nodeCount = 0;
+    }
+
+    private static int hash(long tile) {
+        long h = tile * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}